@@ -3,9 +3,18 @@ package biosecLogger.analysis;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -16,32 +25,52 @@ import org.json.JSONObject;
 import android.content.Context;
 import android.os.Environment;
 import android.util.Log;
-import biosecLogger.core.LoggedKey;
+import biosecLogger.core.CompiledTemplate;
+import biosecLogger.core.KeystrokeSample;
 import biosecLogger.core.LoginEvaluator;
 import biosecLogger.core.OptionsManager;
 import biosecLogger.core.StorageHandler;
+import biosecLogger.core.TemplateCache;
+import biosecLogger.core.TemplateGallery;
+import biosecLogger.core.TemplateJournal;
 import biosecLogger.core.UserLoggerManager;
 import biosecLogger.core.UserModel;
 import biosecLogger.exceptions.InvalidLoginException;
 
 /**
  * Analyzer is supposed to test experimental samples obtained from volunteers.
+ * Analyze is split into cached stages, each is computed again only when its
+ * own settings change: loaded experimental data, compiled templates (flag,
+ * n-graphs, algorithm), scores of single channels and rates (n-graphs,
+ * algorithm, p-threshold), score matrices combined from them (flag) and
+ * results (sensitivity). Change of flag evaluates only channels which were
+ * not evaluated yet.
  * 
  * @author Stefan Smihla
  * 
  */
 public class Analyzer {
 
+	private static final int ALL_CHANNELS = OptionsManager.FLYINGTIMES
+			| OptionsManager.ACCELERANCE | OptionsManager.ORIENTATION;
+
+	private static final int RATES = OptionsManager.LONGPRESSRATE
+			| OptionsManager.ERRORRATE;
+
 	List<Results> resultsList;
 	private OptionsManager oManager;
 	private ExLoginEvaluator loginEvaluator;
 	private ExStorageHandler storage;
+	private ExTemplateCache templates;
+	private Map<String, ScoreMatrix[]> scores;
+	private Map<String, PartScores[]> partScores;
+	private int loadedChannels;
 
-	private List<UserModel> simpleUsers;
-	private List<List<List<LoggedKey>>> simpleTestSamples;
+	private List<ExUserModel> simpleUsers;
+	private List<List<KeystrokeSample>> simpleTestSamples;
 
-	private List<UserModel> complexUsers;
-	private List<List<List<LoggedKey>>> complexTestSamples;
+	private List<ExUserModel> complexUsers;
+	private List<List<KeystrokeSample>> complexTestSamples;
 
 	/**
 	 * Extended StorageHandler to be accessible from analysis sub-package.
@@ -53,8 +82,12 @@ public class Analyzer {
 			return StorageHandler.saveFile(filename, content, ctx, b64encode);
 		}
 
-		protected String exLoadFile(String filename, Context ctx) throws FileNotFoundException, IOException {
-			return StorageHandler.loadFile(filename, ctx);
+		protected byte[] exLoadBytes(String filename, Context ctx) throws FileNotFoundException, IOException {
+			return StorageHandler.loadBytes(filename, ctx);
+		}
+
+		protected InputStream exOpenFile(String filename, Context ctx) throws FileNotFoundException {
+			return StorageHandler.openFile(filename, ctx);
 		}
 	};
 
@@ -68,11 +101,134 @@ public class Analyzer {
 			super(oManager);
 		}
 
-		protected boolean exCheckPatter(UserModel user, List<LoggedKey> row) {
-			return super.checkPatter(user, row);
+		protected double[][] exParts(TemplateGallery gallery,
+				KeystrokeSample row) {
+			return super.evaluateParts(gallery, row);
+		}
+
+		protected double exCombine(double[] parts, int flag) {
+			return super.combineParts(parts, flag);
+		}
+
+		protected void exMergeParts(double[] parts, double[] added, int flag) {
+			for (int part = 0; part < PARTS.length; part++) {
+				if ((flag & PARTS[part]) == PARTS[part]) {
+					parts[part] = added[part];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Extended OptionsManager to be accessible from analysis sub-package.
+	 * 
+	 * @see OptionsManager class
+	 */
+	private class ExOptionsManager extends OptionsManager {
+		protected ExOptionsManager(OptionsManager oManager, int flag) {
+			super(oManager, flag);
+		}
+	}
+
+	/**
+	 * Extended TemplateGallery to be accessible from analysis sub-package.
+	 * 
+	 * @see TemplateGallery class
+	 */
+	private class ExTemplateGallery extends TemplateGallery {
+		protected ExTemplateGallery(List<CompiledTemplate> templates,
+				OptionsManager oManager) {
+			super(templates, oManager);
+		}
+
+		protected int exSize() {
+			return super.size();
+		}
+	}
+
+	/**
+	 * Extended TemplateCache to be accessible from analysis sub-package.
+	 * 
+	 * @see TemplateCache class
+	 */
+	private class ExTemplateCache extends TemplateCache {
+		protected ExTemplateCache(OptionsManager oManager) {
+			super(oManager);
+		}
+
+		protected CompiledTemplate exGetTemplate(UserModel user,
+				OptionsManager oManager) {
+			return super.getTemplate(user, oManager);
+		}
+
+		protected void exClear() {
+			super.clear();
+		}
+	}
+
+	/**
+	 * Extended TemplateJournal to be accessible from analysis sub-package.
+	 * 
+	 * @see TemplateJournal class
+	 */
+	private class ExTemplateJournal extends TemplateJournal {
+		protected ExTemplateJournal(String username, Context ctx) {
+			super(username, ctx);
+		}
+
+		protected boolean exIsTemplateFile(String filename) {
+			return getTemplateName().equals(filename);
+		}
+
+		protected void exReplay(UserModel user) {
+			super.replay(user);
 		}
 	}
 	
+	/**
+	 * Scores of test samples of one phrase against all users split into
+	 * channels and rates. Parts are evaluated only when some flag needs them.
+	 */
+	private static class PartScores {
+		/** Flag of evaluated parts */
+		private int flag;
+		/** Parts of every test sample for every user */
+		private double[][][] parts;
+	}
+
+	/**
+	 * Task evaluates parts of scores of single test sample against templates
+	 * of all users in one pass over gallery. Task returns its own parts, so
+	 * tasks do not share any mutable state.
+	 */
+	private class AnalyzeTask implements Callable<double[][]> {
+		private ExLoginEvaluator evaluator;
+		private ExTemplateGallery gallery;
+		private KeystrokeSample testSample;
+
+		/**
+		 * Creates task for single test sample.
+		 * 
+		 * @param evaluator
+		 *            evaluator of evaluated parts
+		 * @param gallery
+		 *            compiled templates of all users
+		 * @param testSample
+		 *            evaluated test sample
+		 */
+		protected AnalyzeTask(ExLoginEvaluator evaluator,
+				ExTemplateGallery gallery, KeystrokeSample testSample) {
+			this.evaluator = evaluator;
+			this.gallery = gallery;
+			this.testSample = testSample;
+		}
+
+		@Override
+		public double[][] call() {
+			return evaluator.exParts(gallery, testSample);
+		}
+	}
+
 	/**
 	 * Initialize instance of Analyzer.
 	 * 
@@ -84,13 +240,16 @@ public class Analyzer {
 		storage = new ExStorageHandler();
 		
 		loginEvaluator = new ExLoginEvaluator(oManager);
+		templates = new ExTemplateCache(oManager);
+		scores = new HashMap<String, ScoreMatrix[]>();
+		partScores = new HashMap<String, PartScores[]>();
 		this.oManager = oManager;
 		
-		simpleUsers = new ArrayList<UserModel>();
-		complexUsers = new ArrayList<UserModel>();
+		simpleUsers = new ArrayList<ExUserModel>();
+		complexUsers = new ArrayList<ExUserModel>();
 
-		simpleTestSamples = new ArrayList<List<List<LoggedKey>>>();
-		complexTestSamples = new ArrayList<List<List<LoggedKey>>>();
+		simpleTestSamples = new ArrayList<List<KeystrokeSample>>();
+		complexTestSamples = new ArrayList<List<KeystrokeSample>>();
 	}
 
 	/**
@@ -130,54 +289,152 @@ public class Analyzer {
 	}
 
 	/**
-	 * Analyze experimental samples and returns results. Results contains FAR
-	 * and FRR for each experimental user and evaluated phrase.
+	 * Analyze experimental samples and returns final scores of every test
+	 * sample against every user. FAR and FRR for any sensitivity are then
+	 * computed from scores. Scores are combined from parts of single channels
+	 * and rates, only parts of flag which were not evaluated yet are
+	 * evaluated. Templates for missing parts are taken from cache and packed
+	 * into gallery, so every test sample is compared with all users in one
+	 * pass as in identification. Every test sample is evaluated in separate
+	 * task and tasks run on all available processors. Every test sample of
+	 * other user is impostor attempt. Users without logged orientation are
+	 * skipped when orientation is evaluated.
 	 * 
-	 * @param users
+	 * @param executor
+	 *            executor which runs analyze tasks
+	 * @param loadedUsers
 	 *            list of user models with experimental template
-	 * @param testSamples
+	 * @param loadedSamples
 	 *            list of samples selected as experimental
 	 * @param phrase
 	 *            evaluated phrase
-	 * @return Result object with FAR, FRR for each user
+	 * @param cached
+	 *            parts evaluated for previous flags
+	 * @return score matrix of test samples against users
 	 */
-	private Result analyzeData(List<UserModel> users,
-			List<List<List<LoggedKey>>> testSamples, String phrase) {
-		int falseAccept[] = new int[users.size()];
-		int incorrectTotal[] = new int[users.size()];
-		int falseReject[] = new int[users.size()];
-		int correctTotal[] = new int[users.size()];
-		double far[] = new double[users.size()];
-		double frr[] = new double[users.size()];
-
-		for (List<List<LoggedKey>> userTestSamples : testSamples) {
-			int index = testSamples.indexOf(userTestSamples);
-			for (List<LoggedKey> testSample : userTestSamples) {
-				for (UserModel user : users) {
-					boolean result = loginEvaluator.exCheckPatter(user,
-							testSample);
-
-					if (index == users.indexOf(user)) {
-						if (result == false) {
-							falseReject[index]++;
-						}
-						correctTotal[index]++;
-					} else {
-						if (result == true) {
-							falseAccept[index]++;
-						}
-						incorrectTotal[index]++;
-					}
+	private ScoreMatrix analyzeData(ExecutorService executor,
+			List<ExUserModel> loadedUsers,
+			List<List<KeystrokeSample>> loadedSamples, String phrase,
+			PartScores cached) {
+		List<UserModel> users = new ArrayList<UserModel>();
+		List<KeystrokeSample> rows = new ArrayList<KeystrokeSample>();
+		List<Integer> owners = new ArrayList<Integer>();
+		int flag = oManager.getFlag();
+
+		for (int i = 0; i < loadedUsers.size(); i++) {
+			if (loadedUsers.get(i).analyzeWhenOrientation(flag)) {
+				for (KeystrokeSample testSample : loadedSamples.get(i)) {
+					rows.add(testSample);
+					owners.add(users.size());
 				}
+				users.add(loadedUsers.get(i));
+			}
+		}
+
+		if (cached.parts == null || (flag & ~cached.flag) != 0) {
+			/* Rates are cheap, they are evaluated with every missing channel */
+			int partFlag = (flag & ALL_CHANNELS & ~cached.flag) | RATES;
+			evaluateParts(executor, users, rows, cached, partFlag);
+		}
+
+		ScoreMatrix matrix = new ScoreMatrix(rows.size(), users.size(), phrase);
+		for (int i = 0; i < rows.size(); i++) {
+			double[] row = new double[users.size()];
+			for (int u = 0; u < row.length; u++) {
+				row[u] = loginEvaluator.exCombine(cached.parts[i][u], flag);
 			}
+			matrix.setRow(i, owners.get(i), row);
 		}
 
-		for (int i = 0; i < users.size(); i++) {
-			far[i] = (double) falseAccept[i] / incorrectTotal[i];
-			frr[i] = (double) falseReject[i] / correctTotal[i];
+		return matrix;
+	}
+
+	/**
+	 * Evaluates parts of flag for all test samples against all users and adds
+	 * them to cached parts.
+	 * 
+	 * @param executor
+	 *            executor which runs analyze tasks
+	 * @param users
+	 *            analyzed users
+	 * @param rows
+	 *            test samples of all analyzed users
+	 * @param cached
+	 *            parts evaluated for previous flags
+	 * @param partFlag
+	 *            flag of evaluated parts
+	 */
+	private void evaluateParts(ExecutorService executor, List<UserModel> users,
+			List<KeystrokeSample> rows, PartScores cached, int partFlag) {
+		final OptionsManager partOptions = new ExOptionsManager(oManager,
+				partFlag);
+		ExLoginEvaluator evaluator = new ExLoginEvaluator(partOptions);
+
+		List<Future<CompiledTemplate>> compiled = new ArrayList<Future<CompiledTemplate>>();
+		List<CompiledTemplate> userTemplates = new ArrayList<CompiledTemplate>();
+		List<Future<double[][]>> futures = new ArrayList<Future<double[][]>>();
+
+		for (final UserModel user : users) {
+			compiled.add(executor.submit(new Callable<CompiledTemplate>() {
+				@Override
+				public CompiledTemplate call() {
+					return templates.exGetTemplate(user, partOptions);
+				}
+			}));
 		}
 
-		return new Result(far, frr, phrase);
+		try {
+			for (Future<CompiledTemplate> future : compiled) {
+				userTemplates.add(future.get());
+			}
+
+			/* Templates are compiled for evaluated parts, none is skipped */
+			ExTemplateGallery gallery = new ExTemplateGallery(userTemplates,
+					partOptions);
+			if (gallery.exSize() != userTemplates.size()) {
+				throw new IllegalStateException(
+						"Templates do not match settings");
+			}
+
+			for (KeystrokeSample row : rows) {
+				futures.add(executor.submit(new AnalyzeTask(evaluator, gallery,
+						row)));
+			}
+
+			if (cached.parts == null) {
+				cached.parts = new double[rows.size()][][];
+				for (int i = 0; i < rows.size(); i++) {
+					cached.parts[i] = futures.get(i).get();
+				}
+			} else {
+				for (int i = 0; i < rows.size(); i++) {
+					double[][] added = futures.get(i).get();
+					for (int u = 0; u < added.length; u++) {
+						/* Both are null for different password length */
+						if (added[u] != null) {
+							loginEvaluator.exMergeParts(cached.parts[i][u],
+									added[u], partFlag);
+						}
+					}
+				}
+			}
+			cached.flag |= partFlag;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Analyze was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			for (Future<CompiledTemplate> future : compiled) {
+				future.cancel(true);
+			}
+			for (Future<double[][]> future : futures) {
+				future.cancel(true);
+			}
+		}
 	}
 	
 	/**
@@ -190,25 +447,33 @@ public class Analyzer {
 	public List<ExUserModel> loadUsersOnly(Context ctx) {
 		List<ExUserModel> users = new ArrayList<ExUserModel>();
 		File[] files = ctx.getFilesDir().listFiles();
-		JSONObject json;
-		String template, password;
+		byte[] template;
+		String password;
 		for (File file : files){
 			ExUserModel user = new ExUserModel(null, null, 0);
 			
 			try {
-				template = storage.exLoadFile(file.getName(), ctx);
-				json = new JSONObject(template);
-				password = json.getString("password");
+				template = storage.exLoadBytes(file.getName(), ctx);
+				password = ExUserModel.exReadPassword(template);
+				if (password == null) {
+					/* Not correct file */
+					continue;
+				}
 				
-				user.loadTemplateFromString(template, password);
+				user.loadTemplate(template, password);
+
+				/* Skips unfinished compaction, adds journaled samples */
+				ExTemplateJournal journal = new ExTemplateJournal(
+						user.getUsername(), ctx);
+				if (!journal.exIsTemplateFile(file.getName())) {
+					continue;
+				}
+				journal.exReplay(user);
 				users.add(user);
 			} catch (IOException e) {
 				Log.w(UserLoggerManager.LOGNAME, e.getMessage(), e);
 			} catch (InvalidLoginException e) {
 				Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
-			} catch (JSONException e) {
-				/* Not correct file */
-				continue;
 			}
 		}
 		
@@ -235,9 +500,9 @@ public class Analyzer {
 			ExUserModel user = new ExUserModel(null, null, 0);
 
 			try {
-				user.loadTemplateFromString(
-						storage.exLoadFile(file.toString(), null), phrase);
-				users.add(user);
+				if (loadUser(user, file, phrase, ALL_CHANNELS)) {
+					users.add(user);
+				}
 			} catch (IOException e) {
 				Log.w(UserLoggerManager.LOGNAME, e.getMessage(), e);
 				continue;
@@ -250,9 +515,48 @@ public class Analyzer {
 		return users;
 	}
 	
+	/**
+	 * Streams user's template from external storage.
+	 * 
+	 * @param user
+	 *            empty user model
+	 * @param file
+	 *            template file
+	 * @param phrase
+	 *            encrypted password phrase
+	 * @param channels
+	 *            flag of sensor channels to be loaded
+	 * @return true on success, else false
+	 * @throws IOException
+	 *             raises when file could not be opened
+	 * @throws InvalidLoginException
+	 *             raises when phrase does not match
+	 */
+	private boolean loadUser(ExUserModel user, File file, String phrase,
+			int channels) throws IOException, InvalidLoginException {
+		InputStream in = storage.exOpenFile(file.toString(), null);
+		try {
+			return user.loadTemplate(in, phrase, channels);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns sensor channels needed by actual flag. Flying times are always
+	 * loaded.
+	 * 
+	 * @return flag of needed channels
+	 */
+	private int getNeededChannels() {
+		return OptionsManager.FLYINGTIMES
+				| (oManager.getFlag() & ALL_CHANNELS);
+	}
+
 	/**
 	 * Loads data from directory which contains experimental data for certain
-	 * phrase.
+	 * phrase. Data are loaded only once, only sensor channels from flag are
+	 * read.
 	 * 
 	 * @param users
 	 *            empty list to fill with experimental user's template
@@ -262,10 +566,12 @@ public class Analyzer {
 	 *            plain password phrase to be evaluated
 	 * @param directory
 	 *            directory which contains experimental data
+	 * @param channels
+	 *            flag of sensor channels to be loaded
 	 */
-	private void loadData(List<UserModel> users,
-			List<List<List<LoggedKey>>> testSamples, String plainPhrase,
-			String directory) {
+	private void loadData(List<ExUserModel> users,
+			List<List<KeystrokeSample>> testSamples, String plainPhrase,
+			String directory, int channels) {
 		if (users.size() == 0 && testSamples.size() == 0) {
 			File[] files = getFiles(directory);
 			String phrase = encrypt(plainPhrase);
@@ -275,8 +581,9 @@ public class Analyzer {
 						oManager.getTemplateHoldCounter());
 
 				try {
-					user.loadTemplateFromString(
-							storage.exLoadFile(file.toString(), null), phrase);
+					if (!loadUser(user, file, phrase, channels)) {
+						continue;
+					}
 				} catch (IOException e) {
 					Log.w(UserLoggerManager.LOGNAME, e.getMessage(), e);
 					continue;
@@ -285,19 +592,15 @@ public class Analyzer {
 					continue;
 				}
 
-				if (!user.analyzeWhenOrientation(oManager.getFlag())){
-					continue;
-				}
-				
-				List<List<LoggedKey>> userTestSamples = new ArrayList<List<LoggedKey>>();
+				List<KeystrokeSample> userTestSamples = new ArrayList<KeystrokeSample>();
 
-				for (int i = 15; i < user.getLoggedKeys().size(); i++) {
-					userTestSamples.add(user.getLoggedKeys().get(i));
+				for (int i = 15; i < user.getSamples().size(); i++) {
+					userTestSamples.add(user.getSamples().get(i));
 				}
 
 				for (int i = 0; i < 5; i++) {
-					user.getLoggedKeys().remove(0);
-					user.getLoggedKeys().remove(user.getLoggedKeys().size() - 1);
+					user.removeRow(0);
+					user.removeRow(user.getSamples().size() - 1);
 				}
 
 				users.add(user);
@@ -306,24 +609,121 @@ public class Analyzer {
 		}
 	}
 
+	/**
+	 * Returns key of score matrices for actual settings. Sensitivity is not
+	 * part of key, because it is applied to computed scores. P-threshold is
+	 * used only by T-tests.
+	 * 
+	 * @return key of score matrices
+	 */
+	private String getScoresKey() {
+		int algorithm = oManager.getEvaluationAlgorithm();
+		double pThreshold = (algorithm == OptionsManager.T_TESTS) ? oManager
+				.getThresholdP() : 0;
+
+		return String.format(Locale.ENGLISH, "%d:%d:%d:%s",
+				oManager.getFlag(), oManager.getGraphs(), algorithm,
+				Double.toString(pThreshold));
+	}
+
+	/**
+	 * Returns key of part scores for actual settings. Flag is not part of key,
+	 * because scores of any flag are combined from parts. Only orientation is
+	 * part of key, because users without logged orientation are skipped when
+	 * it is evaluated, so test samples differ.
+	 * 
+	 * @return key of part scores
+	 */
+	private String getPartsKey() {
+		int algorithm = oManager.getEvaluationAlgorithm();
+		double pThreshold = (algorithm == OptionsManager.T_TESTS) ? oManager
+				.getThresholdP() : 0;
+
+		return String.format(Locale.ENGLISH, "%d:%d:%s:%d",
+				oManager.getGraphs(), algorithm, Double.toString(pThreshold),
+				oManager.getFlag() & OptionsManager.ORIENTATION);
+	}
+
+	/**
+	 * Computes score matrices of both phrases for actual settings.
+	 * 
+	 * @return score matrices of simple and complex phrase
+	 */
+	private ScoreMatrix[] computeScores() {
+		/* Evaluator keeps settings from its creation */
+		loginEvaluator = new ExLoginEvaluator(oManager);
+
+		String key = getPartsKey();
+		PartScores[] cached = partScores.get(key);
+		if (cached == null) {
+			cached = new PartScores[] { new PartScores(), new PartScores() };
+			partScores.put(key, cached);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+		try {
+			return new ScoreMatrix[] {
+					analyzeData(executor, simpleUsers, simpleTestSamples,
+							"vcelimed", cached[0]),
+					analyzeData(executor, complexUsers, complexTestSamples,
+							"l3kvarov@strudla", cached[1]) };
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	/**
 	 * Runs complete analyze for experimental samples. Samples must be
 	 * downloaded and located biosec_data directory in external storage.
+	 * Experimental data, compiled templates, part scores and score matrices
+	 * from previous analyzes are reused when their settings did not change,
+	 * so change of sensitivity only applies it to cached scores and change of
+	 * flag evaluates only new channels.
 	 * 
 	 * @return Results object contains evaluated data
 	 */
 	public Results run() {
-		loadData(simpleUsers, simpleTestSamples, "vcelimed", "biosec_data/1");
+		int channels = getNeededChannels();
+		if ((channels & ~loadedChannels) != 0) {
+			/*
+			 * Missing channels were skipped, data are loaded again with
+			 * channels of all runs. Scores of previous settings stay valid.
+			 */
+			channels |= loadedChannels;
+			simpleUsers.clear();
+			simpleTestSamples.clear();
+			complexUsers.clear();
+			complexTestSamples.clear();
+			templates.exClear();
+			loadedChannels = channels;
+		}
+
+		loadData(simpleUsers, simpleTestSamples, "vcelimed", "biosec_data/1",
+				loadedChannels);
 		loadData(complexUsers, complexTestSamples, "l3kvarov@strudla",
-				"biosec_data/2");
+				"biosec_data/2", loadedChannels);
 
-		resultsList.add(new Results(analyzeData(simpleUsers, simpleTestSamples,
-				"vcelimed"), analyzeData(complexUsers, complexTestSamples,
-				"l3kvarov@strudla"), oManager));
+		String key = getScoresKey();
+		ScoreMatrix[] matrices = scores.get(key);
+		if (matrices == null) {
+			matrices = computeScores();
+			scores.put(key, matrices);
+		}
 
+		resultsList.add(new Results(matrices[0], matrices[1], oManager));
 		return resultsList.get(resultsList.size() - 1);
 	}
-	
+
+	/**
+	 * Checks if analyzer has any results.
+	 * 
+	 * @return	true if analyze was run, else false
+	 */
+	public boolean hasResults() {
+		return !resultsList.isEmpty();
+	}
+
 	/**
 	 * Returns last results from analyzer.
 	 * 
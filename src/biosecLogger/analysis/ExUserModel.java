@@ -1,8 +1,9 @@
 package biosecLogger.analysis;
 
+import java.io.InputStream;
 import java.util.List;
 
-import biosecLogger.core.LoggedKey;
+import biosecLogger.core.KeystrokeSample;
 import biosecLogger.core.OptionsManager;
 import biosecLogger.core.UserModel;
 import biosecLogger.exceptions.InvalidLoginException;
@@ -31,8 +32,36 @@ public class ExUserModel extends UserModel {
 	}
 	
 	@Override
-	protected List<List<LoggedKey>> getLoggedKeys() {
-		return super.getLoggedKeys();
+	protected boolean loadTemplate(byte[] data, String password)
+			throws InvalidLoginException {
+		return super.loadTemplate(data, password);
+	}
+	
+	@Override
+	protected boolean loadTemplate(InputStream in, String password, int flag)
+			throws InvalidLoginException {
+		return super.loadTemplate(in, password, flag);
+	}
+	
+	/**
+	 * Reads encrypted password stored in binary or JSON template.
+	 * 
+	 * @param data
+	 * 			content of template file
+	 * @return	encrypted password or null if data are not user's template
+	 */
+	protected static String exReadPassword(byte[] data) {
+		return UserModel.readPassword(data);
+	}
+	
+	@Override
+	protected List<KeystrokeSample> getSamples() {
+		return super.getSamples();
+	}
+	
+	@Override
+	protected KeystrokeSample removeRow(int index) {
+		return super.removeRow(index);
 	}
 	
 	/**
@@ -9,7 +9,9 @@ import biosecLogger.core.UserLoggerManager;
 
 /**
  * Results class contains results for single and complex phrase as well as
- * sensitivity and evaluation settings.
+ * sensitivity and evaluation settings. Score matrices of both phrases are
+ * kept, so results for another sensitivity are computed without evaluating
+ * samples again.
  * 
  * 
  * @author Stefan Smihla
@@ -20,6 +22,9 @@ public class Results {
 	private Result simplePassword;
 	private Result complexPassword;
 
+	private ScoreMatrix simpleScores;
+	private ScoreMatrix complexScores;
+
 	private int graphs;
 	private int flag;
 	private int algorithm;
@@ -27,25 +32,45 @@ public class Results {
 	private double sensitivity;
 
 	/**
-	 * Constructor consist from result for single phrase, complex phrase and
-	 * Options Manager instance class.
+	 * Constructor consist from score matrices for single phrase, complex
+	 * phrase and Options Manager instance class. Results are computed for
+	 * actual sensitivity.
 	 * 
 	 * @param simple
-	 *            result object of single phrase
+	 *            score matrix of single phrase
 	 * @param complex
-	 *            result object of complex phrase
+	 *            score matrix of complex phrase
 	 * @param oManager
 	 *            evaluations settings
 	 */
-	protected Results(Result simple, Result complex, OptionsManager oManager) {
-		simplePassword = simple;
-		complexPassword = complex;
-		
+	protected Results(ScoreMatrix simple, ScoreMatrix complex,
+			OptionsManager oManager) {
 		graphs = oManager.getGraphs();
 		flag = oManager.getFlag();
 		algorithm = oManager.getEvaluationAlgorithm();
 		pThreshold = oManager.getThresholdP();
-		sensitivity = oManager.getSensitivity();
+
+		setScores(simple, complex, oManager.getSensitivity());
+	}
+
+	/**
+	 * Sets score matrices and computes results for sensitivity.
+	 * 
+	 * @param simple
+	 *            score matrix of single phrase
+	 * @param complex
+	 *            score matrix of complex phrase
+	 * @param sensitivity
+	 *            minimal accepted final score
+	 */
+	private void setScores(ScoreMatrix simple, ScoreMatrix complex,
+			double sensitivity) {
+		simpleScores = simple;
+		complexScores = complex;
+		this.sensitivity = sensitivity;
+
+		simplePassword = simple.getResult(sensitivity);
+		complexPassword = complex.getResult(sensitivity);
 	}
 
 	/**
@@ -102,6 +127,8 @@ public class Results {
 			json.put("algorithm", algorithm);
 			json.put("pThreshold", pThreshold);
 			json.put("sensitivity", sensitivity);
+			json.put("simpleEer", simpleScores.getEqualErrorRate() * 100);
+			json.put("complexEer", complexScores.getEqualErrorRate() * 100);
 		} catch (JSONException e) {
 			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
 			return null;
@@ -127,4 +154,22 @@ public class Results {
 	public Result getComplexResult(){
 		return complexPassword;
 	}
+
+	/**
+	 * Returns score matrix for simple password.
+	 * 
+	 * @return	score matrix for simple password
+	 */
+	public ScoreMatrix getSimpleScores(){
+		return simpleScores;
+	}
+
+	/**
+	 * Returns score matrix for complex password.
+	 * 
+	 * @return	score matrix for complex password
+	 */
+	public ScoreMatrix getComplexScores(){
+		return complexScores;
+	}
 }
@@ -0,0 +1,341 @@
+package biosecLogger.analysis;
+
+import java.util.Arrays;
+
+/**
+ * ScoreMatrix holds final scores of every test sample against template of
+ * every user. Scores are stored row by row in single primitive array, row is
+ * test sample and column is user. Sample is accepted when its score is
+ * greater than or equal to sensitivity, so FAR and FRR for any sensitivity
+ * as well as complete error curve are derived from stored scores without
+ * evaluating samples again.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class ScoreMatrix {
+
+	private int samples;
+	private int users;
+
+	private String phrase;
+
+	private double[] scores;
+	private int[] owners;
+
+	private double[] thresholds;
+	private double[] farCurve;
+	private double[] frrCurve;
+
+	/**
+	 * Creates matrix filled with zeros.
+	 *
+	 * @param samples
+	 *            number of test samples
+	 * @param users
+	 *            number of users
+	 * @param phrase
+	 *            evaluated phrase
+	 */
+	protected ScoreMatrix(int samples, int users, String phrase) {
+		this.samples = samples;
+		this.users = users;
+		this.phrase = phrase;
+
+		scores = new double[samples * users];
+		owners = new int[samples];
+	}
+
+	/**
+	 * Sets scores of single test sample against all users. Undefined scores
+	 * are stored as negative infinity, so they can be sorted.
+	 *
+	 * @param sample
+	 *            index of test sample
+	 * @param owner
+	 *            index of user who typed test sample
+	 * @param values
+	 *            scores of test sample, one per user
+	 */
+	protected void setRow(int sample, int owner, double[] values) {
+		owners[sample] = owner;
+		int offset = sample * users;
+		for (int u = 0; u < users; u++) {
+			scores[offset + u] = Double.isNaN(values[u])
+					? Double.NEGATIVE_INFINITY : values[u];
+		}
+		thresholds = null;
+	}
+
+	/**
+	 * Returns evaluated phrase.
+	 *
+	 * @return password phrase
+	 */
+	public String getPhrase() {
+		return phrase;
+	}
+
+	/**
+	 * Returns number of test samples.
+	 *
+	 * @return number of test samples
+	 */
+	public int getSampleCount() {
+		return samples;
+	}
+
+	/**
+	 * Returns number of users.
+	 *
+	 * @return number of users
+	 */
+	public int getUserCount() {
+		return users;
+	}
+
+	/**
+	 * Returns final score of test sample against template of user.
+	 *
+	 * @param sample
+	 *            index of test sample
+	 * @param user
+	 *            index of user
+	 * @return final score
+	 */
+	public double getScore(int sample, int user) {
+		return scores[sample * users + user];
+	}
+
+	/**
+	 * Returns index of user who typed test sample.
+	 *
+	 * @param sample
+	 *            index of test sample
+	 * @return index of user
+	 */
+	public int getOwner(int sample) {
+		return owners[sample];
+	}
+
+	/**
+	 * Computes FAR and FRR of every user for sensitivity. Test samples are
+	 * grouped by user who typed them, same as in analyze of single
+	 * sensitivity.
+	 *
+	 * @param sensitivity
+	 *            minimal accepted final score
+	 * @return Result object with FAR, FRR for each user
+	 */
+	public Result getResult(double sensitivity) {
+		int falseAccept[] = new int[users];
+		int incorrectTotal[] = new int[users];
+		int falseReject[] = new int[users];
+		int correctTotal[] = new int[users];
+		double far[] = new double[users];
+		double frr[] = new double[users];
+
+		for (int s = 0; s < samples; s++) {
+			int index = owners[s];
+			int offset = s * users;
+
+			for (int u = 0; u < users; u++) {
+				boolean result = scores[offset + u] >= sensitivity;
+
+				if (index == u) {
+					if (result == false) {
+						falseReject[index]++;
+					}
+					correctTotal[index]++;
+				} else {
+					if (result == true) {
+						falseAccept[index]++;
+					}
+					incorrectTotal[index]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < users; i++) {
+			far[i] = (double) falseAccept[i] / incorrectTotal[i];
+			frr[i] = (double) falseReject[i] / correctTotal[i];
+		}
+
+		return new Result(far, frr, phrase);
+	}
+
+	/**
+	 * Computes error curve. Genuine and impostor scores are sorted and both
+	 * sorted arrays are walked once over all distinct scores. Every distinct
+	 * score is one threshold and the last threshold is positive infinity,
+	 * where all samples are rejected. Curve has always at least two points.
+	 */
+	private void computeCurve() {
+		double[] genuine = new double[samples];
+		double[] impostor = new double[samples * Math.max(users - 1, 0)];
+		int g = 0;
+		int i = 0;
+
+		for (int s = 0; s < samples; s++) {
+			int offset = s * users;
+			for (int u = 0; u < users; u++) {
+				if (owners[s] == u) {
+					genuine[g++] = scores[offset + u];
+				} else {
+					impostor[i++] = scores[offset + u];
+				}
+			}
+		}
+
+		Arrays.sort(genuine, 0, g);
+		Arrays.sort(impostor, 0, i);
+
+		double[] values = new double[g + i + 2];
+		double[] far = new double[g + i + 2];
+		double[] frr = new double[g + i + 2];
+		int points = 0;
+
+		if (g + i == 0) {
+			values[points++] = Double.NEGATIVE_INFINITY;
+		}
+
+		/* Genuine below threshold are rejected, impostor above are accepted */
+		int rejected = 0;
+		int accepted = i;
+		int gi = 0;
+		int ii = 0;
+
+		while (gi < g || ii < i) {
+			double threshold = Math.min((gi < g) ? genuine[gi]
+					: Double.POSITIVE_INFINITY, (ii < i) ? impostor[ii]
+					: Double.POSITIVE_INFINITY);
+
+			values[points] = threshold;
+			far[points] = (i == 0) ? 0 : (double) accepted / i;
+			frr[points] = (g == 0) ? 0 : (double) rejected / g;
+			points++;
+
+			while (gi < g && genuine[gi] == threshold) {
+				gi++;
+				rejected++;
+			}
+			while (ii < i && impostor[ii] == threshold) {
+				ii++;
+				accepted--;
+			}
+		}
+
+		values[points] = Double.POSITIVE_INFINITY;
+		far[points] = 0;
+		frr[points] = (g == 0) ? 0 : 1;
+		points++;
+
+		thresholds = Arrays.copyOf(values, points);
+		farCurve = Arrays.copyOf(far, points);
+		frrCurve = Arrays.copyOf(frr, points);
+	}
+
+	/**
+	 * Returns thresholds of error curve in ascending order.
+	 *
+	 * @return thresholds of error curve
+	 */
+	public double[] getThresholds() {
+		if (thresholds == null) {
+			computeCurve();
+		}
+		return thresholds;
+	}
+
+	/**
+	 * Returns FAR of all test samples for every threshold of error curve.
+	 *
+	 * @return FAR curve
+	 */
+	public double[] getFarCurve() {
+		if (thresholds == null) {
+			computeCurve();
+		}
+		return farCurve;
+	}
+
+	/**
+	 * Returns FRR of all test samples for every threshold of error curve.
+	 *
+	 * @return FRR curve
+	 */
+	public double[] getFrrCurve() {
+		if (thresholds == null) {
+			computeCurve();
+		}
+		return frrCurve;
+	}
+
+	/**
+	 * Returns index of last point of error curve where FAR is not lower than
+	 * FRR. FAR decreases and FRR increases along the curve, so equal error
+	 * rate lies between this point and the next one.
+	 *
+	 * @return index of point
+	 */
+	private int getCrossingIndex() {
+		double[] far = getFarCurve();
+		double[] frr = getFrrCurve();
+
+		int index = 0;
+		while (index < far.length - 2 && far[index + 1] >= frr[index + 1]) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns part of distance between crossing point and next point where
+	 * FAR equals FRR.
+	 *
+	 * @param index
+	 *            index of crossing point
+	 * @return ratio from 0 to 1
+	 */
+	private double getCrossingRatio(int index) {
+		double[] far = getFarCurve();
+		double[] frr = getFrrCurve();
+
+		double before = far[index] - frr[index];
+		double after = far[index + 1] - frr[index + 1];
+
+		return (before == after) ? 0 : before / (before - after);
+	}
+
+	/**
+	 * Returns equal error rate, where FAR equals FRR. Rate is linearly
+	 * interpolated between two points of error curve.
+	 *
+	 * @return equal error rate
+	 */
+	public double getEqualErrorRate() {
+		int index = getCrossingIndex();
+		double ratio = getCrossingRatio(index);
+		double[] far = getFarCurve();
+
+		return far[index] + ratio * (far[index + 1] - far[index]);
+	}
+
+	/**
+	 * Returns sensitivity of equal error rate. Sensitivity is linearly
+	 * interpolated between two thresholds of error curve.
+	 *
+	 * @return sensitivity of equal error rate
+	 */
+	public double getEqualErrorThreshold() {
+		int index = getCrossingIndex();
+		double ratio = getCrossingRatio(index);
+		double[] values = getThresholds();
+
+		if (Double.isInfinite(values[index])
+				|| Double.isInfinite(values[index + 1])) {
+			return values[index];
+		}
+		return values[index] + ratio * (values[index + 1] - values[index]);
+	}
+}
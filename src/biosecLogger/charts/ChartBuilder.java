@@ -20,6 +20,7 @@ import android.content.Intent;
 import android.graphics.Color;
 import biosecLogger.analysis.Result;
 import biosecLogger.analysis.Results;
+import biosecLogger.analysis.ScoreMatrix;
 
 /**
  * Builds graphs for user samples. Contains bar chart and line chart.
@@ -182,6 +183,34 @@ public class ChartBuilder {
 	}
 	
 	
+	/**
+	 * Returns renderer for error curve graph.
+	 * 
+	 * @param title
+	 * 			graph title
+	 * @param xLabel
+	 * 			x label
+	 * @param yLabel
+	 * 			y label
+	 * @return	complete renderer
+	 */
+	private XYMultipleSeriesRenderer setCurveRenderer(String title, String xLabel, String yLabel){
+		XYMultipleSeriesRenderer renderer = initBaseRenderer(title, xLabel, yLabel);
+		setLimitsRenderer(renderer, new double[] {0, 100, 0, 100});
+		
+		int[] colors = new int[]{Color.rgb(0, 0, 200), Color.rgb(0, 200, 0)};
+		
+		XYSeriesRenderer r;
+		for (int i = 0; i < colors.length; i++){
+			r = new XYSeriesRenderer();
+			r.setColor(colors[i]);
+			r.setLineWidth(2);
+			renderer.addSeriesRenderer(r);
+		}
+		
+		return renderer;
+	}
+	
 	/**
 	 * Sets values to bar graphs.
 	 * 
@@ -237,6 +266,44 @@ public class ChartBuilder {
 		return dataset;
 	}
 	
+	/**
+	 * Sets error curve to dataset. Each point is FAR and FRR at one
+	 * sensitivity.
+	 * 
+	 * @param dataset
+	 * 			dataset to add values
+	 * @param scores
+	 * 			score matrix of evaluated phrase
+	 */
+	private void addCurveToDataset(XYMultipleSeriesDataset dataset, ScoreMatrix scores){
+		XYSeries series = new XYSeries(String.format(Locale.ENGLISH, 
+				"\"%s\" - EER %.2f%%", scores.getPhrase(), scores.getEqualErrorRate() * 100));
+		
+		double[] far = scores.getFarCurve();
+		double[] frr = scores.getFrrCurve();
+		for (int i = 0; i < far.length; i++) {
+			series.add(far[i] * 100, frr[i] * 100);
+		}
+		
+		dataset.addSeries(series);
+	}
+	
+	/**
+	 * Sets error curve dataset from results.
+	 * 
+	 * @param res
+	 * 			source results
+	 * @return	complete dataset
+	 */
+	private XYMultipleSeriesDataset setCurveDataset(Results res){
+		XYMultipleSeriesDataset dataset = new XYMultipleSeriesDataset();
+		
+		addCurveToDataset(dataset, res.getSimpleScores());
+		addCurveToDataset(dataset, res.getComplexScores());
+		
+		return dataset;
+	}
+	
 	/**
 	 * Sets line graph dataset from xy values.
 	 * 
@@ -290,6 +357,24 @@ public class ChartBuilder {
 	    		setBarRenderer(title, xLabel, yLabel, res), Type.DEFAULT);
 	}
 	
+	/**
+	 * Builds error curve graph (FRR against FAR) from results.
+	 * 
+	 * @param title
+	 * 			graph title
+	 * @param xLabel
+	 * 			x label
+	 * @param yLabel
+	 * 			y label
+	 * @param res
+	 * 			source results
+	 * @return	intent with new activity
+	 */
+	public Intent buildErrorCurveChart(String title, String xLabel, String yLabel, Results res){ 
+	    return ChartFactory.getLineChartIntent(act, setCurveDataset(res), 
+	    		setCurveRenderer(title, xLabel, yLabel));
+	}
+	
 	/**
 	 * Builds bar graph from xy values.
 	 * 
@@ -6,6 +6,7 @@ import java.util.List;
 import android.content.Context;
 import biosecLogger.analysis.Analyzer;
 import biosecLogger.analysis.ExUserModel;
+import biosecLogger.core.FeatureMatrix;
 import biosecLogger.core.GrubbsTest;
 import biosecLogger.core.OptionsManager;
 
@@ -49,19 +50,10 @@ public class Datasets {
 	 * 			source values
 	 * @return	cleaned values
 	 */
-	private List<List<Double>> applyGrubbs(List<List<Double>> values) {
-		List<List<Double>> result = ExUserTemplate.computeAverageWithDeviation(values);
-		List<List<Double>> grubbsValues = GrubbsTest.grubbsOutlierCorrection(
-				values, result.get(0), result.get(1));
-		List<List<Double>> newValues = new ArrayList<List<Double>>();
-		
-		for (List<Double> row : grubbsValues){
-			if (row.indexOf(null) == -1){
-				newValues.add(row);
-			}
-		}
-		
-		return newValues;
+	private FeatureMatrix applyGrubbs(FeatureMatrix values) {
+		double[][] result = values.computeAverageWithDeviation();
+		return GrubbsTest.grubbsOutlierCorrection(values, result[0], result[1])
+				.removeOutlierRows();
 	}
 		
 	/**
@@ -108,8 +100,8 @@ public class Datasets {
 	 * 				if true, applies Grubbs test cleanup
 	 * @return	xy values
 	 */
-	private List<List<Double>> _getExtractedValues(int userIndex, int characteristic, int userTypes, boolean grubbs){
-		List<List<Double>> values;
+	private FeatureMatrix _getExtractedValues(int userIndex, int characteristic, int userTypes, boolean grubbs){
+		FeatureMatrix values;
 		ExUserModel user = null;
 		
 		switch (userTypes) {
@@ -187,7 +179,7 @@ public class Datasets {
 	 * @return	xy values
 	 */
 	public List<List<Double>> getExtractedValues(int userIndex, int characteristic, int userTypes, boolean grubbs){
-		List<List<Double>> values;
+		FeatureMatrix values;
 		List<List<Double>> computedValues = new ArrayList<List<Double>>();
 		
 		switch (userIndex){
@@ -198,7 +190,8 @@ public class Datasets {
 				userIndex = 1;
 				break;
 			default:
-				return _getExtractedValues(userIndex, characteristic, userTypes, grubbs);
+				values = _getExtractedValues(userIndex, characteristic, userTypes, grubbs);
+				return (values != null) ? values.toList() : null;
 		}
 		
 		int size;
@@ -218,7 +211,10 @@ public class Datasets {
 			
 		for (int i = 0; i < size; i++){
 			values = _getExtractedValues(i, characteristic, userTypes, grubbs);
-			List<Double> result = ExUserTemplate.computeAverageWithDeviation(values).get(userIndex);
+			List<Double> result = new ArrayList<Double>();
+			for (double value : values.computeAverageWithDeviation()[userIndex]){
+				result.add(value);
+			}
 			computedValues.add(result);
 		}
 			
@@ -1,7 +1,6 @@
 package biosecLogger.charts;
 
-import java.util.List;
-
+import biosecLogger.core.FeatureMatrix;
 import biosecLogger.core.UserModel;
 import biosecLogger.core.UserTemplate;
 
@@ -17,22 +16,18 @@ public class ExUserTemplate extends UserTemplate {
 		super(user, flag, false);
 	}
 	
-	protected static List<List<Double>> computeAverageWithDeviation(List<List<Double>> values) {
-		return UserTemplate.computeAverageWithDeviation(values, null);
-	}
-		
 	@Override
-	protected List<List<Double>> getFlyingTimes() {
+	protected FeatureMatrix getFlyingTimes() {
 		return super.getFlyingTimes();
 	}
 		
 	@Override
-	protected List<List<Double>> getAccs(int axis) {
+	protected FeatureMatrix getAccs(int axis) {
 		return super.getAccs(axis);
 	}
 	
 	@Override
-	protected List<List<Double>> getAxises(int axis) {
+	protected FeatureMatrix getAxises(int axis) {
 		return super.getAxises(axis);
 	}
 	
@@ -0,0 +1,428 @@
+package biosecLogger.core;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * CompiledTemplate holds precomputed evaluation data of user's template.
+ * Averages, deviations, error and long press rates and individual thresholds
+ * are computed once for number of accepted samples, when journal of user is
+ * compacted, and loaded directly during login.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class CompiledTemplate {
+
+	private String username;
+
+	private int flag;
+	private int graphs;
+	private int algorithm;
+	private long revision;
+
+	private int passLength;
+	private double errorRate;
+	private double longPressRate;
+
+	private double[][] averages;
+	private double[][] deviations;
+	private double[][] thresholds;
+	private MahalanobisMetric[][] metrics;
+
+	/**
+	 * Creates empty instance of CompiledTemplate. Values are expected to be
+	 * loaded from string.
+	 */
+	protected CompiledTemplate() {
+		initChannels();
+	}
+
+	/**
+	 * Compiles template from user's raw data for actual evaluation settings.
+	 *
+	 * @param user
+	 *            model of user with raw data
+	 * @param oManager
+	 *            evaluation settings
+	 */
+	protected CompiledTemplate(UserModel user, OptionsManager oManager) {
+		initChannels();
+
+		username = user.getUsername();
+		flag = oManager.getFlag();
+		graphs = oManager.getGraphs();
+		algorithm = oManager.getEvaluationAlgorithm();
+		revision = user.getRevision();
+
+		UserTemplate ut = new UserTemplate(user, flag, true);
+		passLength = ut.getPassLength();
+		errorRate = ut.getErrorRate();
+		longPressRate = ut.getLongPressRate();
+
+		if ((flag & OptionsManager.FLYINGTIMES) == OptionsManager.FLYINGTIMES) {
+			compileChannel(user, KeystrokeSample.FLYINGTIMES,
+					ut.getFlyingTimes(), ut.getAverageFlyingTimes(),
+					ut.getFlyingTimesDeviation());
+		}
+
+		for (int i = UserTemplate.X_AXIS; i <= UserTemplate.Z_AXIS; i++) {
+			if ((flag & OptionsManager.ACCELERANCE) == OptionsManager.ACCELERANCE) {
+				compileChannel(user, KeystrokeSample.ACCELERANCE_X + i,
+						ut.getAccs(i), ut.getAvgAccs(i), ut.getDeviationAccs(i));
+			}
+
+			if ((flag & OptionsManager.ORIENTATION) == OptionsManager.ORIENTATION) {
+				compileChannel(user, KeystrokeSample.ORIENTATION_X + i,
+						ut.getAxises(i), ut.getAvgAxises(i),
+						ut.getDeviationAxises(i));
+			}
+		}
+	}
+
+	/**
+	 * Initialize empty channels.
+	 */
+	private void initChannels() {
+		averages = new double[KeystrokeSample.CHANNELS][];
+		deviations = new double[KeystrokeSample.CHANNELS][];
+		thresholds = new double[KeystrokeSample.CHANNELS][];
+		metrics = new MahalanobisMetric[KeystrokeSample.CHANNELS][];
+	}
+
+	/**
+	 * Stores averages and deviations of channel and computes its thresholds
+	 * or Mahalanobis metrics for every n-graph when distance algorithm is
+	 * used.
+	 *
+	 * @param user
+	 *            model of user with raw data
+	 * @param channel
+	 *            channel constant
+	 * @param values
+	 *            extracted values of channel
+	 * @param average
+	 *            average vector of channel
+	 * @param deviation
+	 *            standard deviation vector of channel
+	 */
+	private void compileChannel(UserModel user, int channel,
+			FeatureMatrix values, double[] average, double[] deviation) {
+		averages[channel] = average;
+		deviations[channel] = deviation;
+
+		if (algorithm == OptionsManager.MANHATTAN
+				|| algorithm == OptionsManager.EUCLIDEAN) {
+			thresholds[channel] = LeaveOneOut.computeThresholds(values,
+					user.getStatistics(graphs), channel, graphs, algorithm);
+		} else if (algorithm == OptionsManager.MAHALANOBIS) {
+			metrics[channel] = MahalanobisMetric.compile(values,
+					user.getStatistics(graphs), channel, graphs);
+		}
+	}
+
+	/**
+	 * Returns JSONArray from array values.
+	 *
+	 * @param values
+	 *            array of values
+	 * @return converted JSONArray
+	 * @throws JSONException
+	 *             raises when value is not finite number
+	 */
+	private static JSONArray toJSONArray(double[] values)
+			throws JSONException {
+		JSONArray json = new JSONArray();
+		for (double value : values) {
+			json.put(value);
+		}
+		return json;
+	}
+
+	/**
+	 * Returns array of values from JSONArray.
+	 *
+	 * @param json
+	 *            source JSONArray
+	 * @return array of values
+	 * @throws JSONException
+	 *             raises when data are corrupted
+	 */
+	private static double[] fromJSONArray(JSONArray json)
+			throws JSONException {
+		double[] values = new double[json.length()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = json.getDouble(i);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns JSONArray from array of Mahalanobis metrics.
+	 *
+	 * @param metrics
+	 *            metrics indexed by n - 1
+	 * @return converted JSONArray
+	 * @throws JSONException
+	 *             raises when value is not finite number
+	 */
+	private static JSONArray toJSONArray(MahalanobisMetric[] metrics)
+			throws JSONException {
+		JSONArray json = new JSONArray();
+		for (MahalanobisMetric metric : metrics) {
+			JSONObject jMetric = new JSONObject();
+			JSONArray columns = new JSONArray();
+			for (int column : metric.getColumns()) {
+				columns.put(column);
+			}
+			jMetric.put("columns", columns);
+			jMetric.put("mean", toJSONArray(metric.getMean()));
+			jMetric.put("factor", toJSONArray(metric.getFactor()));
+			jMetric.put("threshold", metric.getThreshold());
+			json.put(jMetric);
+		}
+		return json;
+	}
+
+	/**
+	 * Returns array of Mahalanobis metrics from JSONArray.
+	 *
+	 * @param json
+	 *            source JSONArray
+	 * @return metrics indexed by n - 1
+	 * @throws JSONException
+	 *             raises when data are corrupted
+	 */
+	private static MahalanobisMetric[] metricsFromJSONArray(JSONArray json)
+			throws JSONException {
+		MahalanobisMetric[] metrics = new MahalanobisMetric[json.length()];
+		for (int i = 0; i < metrics.length; i++) {
+			JSONObject jMetric = json.getJSONObject(i);
+			JSONArray jColumns = jMetric.getJSONArray("columns");
+			int[] columns = new int[jColumns.length()];
+			for (int j = 0; j < columns.length; j++) {
+				columns[j] = jColumns.getInt(j);
+			}
+			metrics[i] = new MahalanobisMetric(columns,
+					fromJSONArray(jMetric.getJSONArray("mean")),
+					fromJSONArray(jMetric.getJSONArray("factor")),
+					jMetric.getDouble("threshold"));
+		}
+		return metrics;
+	}
+
+	/**
+	 * Converts compiled template to JSON string.
+	 *
+	 * @return JSON string or null when template contains invalid values
+	 */
+	protected String saveTemplateToString() {
+		JSONObject json = new JSONObject();
+
+		try {
+			json.put("username", username);
+			json.put("flag", flag);
+			json.put("graphs", graphs);
+			json.put("algorithm", algorithm);
+			json.put("revision", revision);
+			json.put("passLength", passLength);
+			json.put("errorRate", errorRate);
+			json.put("longPressRate", longPressRate);
+
+			JSONArray jArray = new JSONArray();
+			for (int i = 0; i < KeystrokeSample.CHANNELS; i++) {
+				if (averages[i] == null) {
+					continue;
+				}
+
+				JSONObject jChannel = new JSONObject();
+				jChannel.put("channel", i);
+				jChannel.put("averages", toJSONArray(averages[i]));
+				jChannel.put("deviations", toJSONArray(deviations[i]));
+
+				if (thresholds[i] != null) {
+					jChannel.put("thresholds", toJSONArray(thresholds[i]));
+				}
+
+				if (metrics[i] != null) {
+					jChannel.put("mahalanobis", toJSONArray(metrics[i]));
+				}
+
+				jArray.put(jChannel);
+			}
+
+			json.put("channels", jArray);
+
+		} catch (JSONException e) {
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+			return null;
+		}
+
+		return json.toString();
+	}
+
+	/**
+	 * Loads compiled template from JSON data.
+	 *
+	 * @param template
+	 *            compiled template JSON string
+	 * @return true on success, false when data are wrong
+	 */
+	protected boolean loadTemplateFromString(String template) {
+		JSONObject json;
+
+		try {
+			json = new JSONObject(template);
+
+			username = json.optString("username", null);
+			flag = json.getInt("flag");
+			graphs = json.getInt("graphs");
+			algorithm = json.getInt("algorithm");
+			/* Templates compiled without revision are recompiled */
+			revision = json.optLong("revision", -1);
+			passLength = json.getInt("passLength");
+			errorRate = json.getDouble("errorRate");
+			longPressRate = json.getDouble("longPressRate");
+
+			JSONArray channels = json.getJSONArray("channels");
+			for (int i = 0; i < channels.length(); i++) {
+				JSONObject jChannel = channels.getJSONObject(i);
+				int channel = jChannel.getInt("channel");
+
+				averages[channel] = fromJSONArray(jChannel
+						.getJSONArray("averages"));
+				deviations[channel] = fromJSONArray(jChannel
+						.getJSONArray("deviations"));
+
+				if (jChannel.has("thresholds")) {
+					thresholds[channel] = fromJSONArray(jChannel
+							.getJSONArray("thresholds"));
+				}
+
+				if (jChannel.has("mahalanobis")) {
+					metrics[channel] = metricsFromJSONArray(jChannel
+							.getJSONArray("mahalanobis"));
+				}
+			}
+		} catch (JSONException e) {
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if compiled template is valid for user's actual samples and
+	 * evaluation settings.
+	 *
+	 * @param user
+	 *            model of user with raw data
+	 * @param oManager
+	 *            evaluation settings
+	 * @return true if template could be used, else false
+	 */
+	protected boolean isValid(UserModel user, OptionsManager oManager) {
+		return isCompatible(oManager) && revision == user.getRevision();
+	}
+
+	/**
+	 * Checks if compiled template was compiled for actual evaluation
+	 * settings.
+	 *
+	 * @param oManager
+	 *            evaluation settings
+	 * @return true if flag, n-graphs and algorithm match, else false
+	 */
+	protected boolean isCompatible(OptionsManager oManager) {
+		return flag == oManager.getFlag() && graphs == oManager.getGraphs()
+				&& algorithm == oManager.getEvaluationAlgorithm();
+	}
+
+	/**
+	 * Returns name of the user.
+	 *
+	 * @return name of user
+	 */
+	protected String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns length of a password.
+	 *
+	 * @return length of a password
+	 */
+	protected int getPassLength() {
+		return passLength;
+	}
+
+	/**
+	 * Returns average vector of channel.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @return average vector
+	 */
+	protected double[] getAverages(int channel) {
+		return averages[channel];
+	}
+
+	/**
+	 * Returns standard deviation vector of channel.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @return standard deviation vector
+	 */
+	protected double[] getDeviations(int channel) {
+		return deviations[channel];
+	}
+
+	/**
+	 * Returns individual threshold of channel for distance vector based
+	 * algorithm.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @param graphs
+	 *            number of n-graphs
+	 * @return computed threshold
+	 */
+	protected double getThreshold(int channel, int graphs) {
+		return thresholds[channel][graphs - 1];
+	}
+
+	/**
+	 * Returns Mahalanobis metric of channel with cached Cholesky factor.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @param graphs
+	 *            number of n-graphs
+	 * @return Mahalanobis metric
+	 */
+	protected DistanceMetric getMetric(int channel, int graphs) {
+		return metrics[channel][graphs - 1];
+	}
+
+	/**
+	 * Returns computed error rate.
+	 *
+	 * @return error rate
+	 */
+	protected double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * Returns computed long press rate.
+	 *
+	 * @return long press rate
+	 */
+	protected double getLongPressRate() {
+		return longPressRate;
+	}
+}
@@ -0,0 +1,49 @@
+package biosecLogger.core;
+
+/**
+ * DistanceMetric compares test vector with average vector of template.
+ * Implementations work directly on primitive arrays and are selected once per
+ * evaluation, so inner loops do not branch on evaluation algorithm.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public interface DistanceMetric {
+
+	/**
+	 * Compares first length values of test vector with average vector.
+	 * Average and deviation vectors start at offset, so vectors of many
+	 * templates can be stored in single array.
+	 *
+	 * @param testValues
+	 *            test vector of values
+	 * @param averageValues
+	 *            average vector of values
+	 * @param deviations
+	 *            standard deviation vector of values
+	 * @param offset
+	 *            index of first value of average and deviation vector
+	 * @param length
+	 *            number of compared values
+	 * @param threshold
+	 *            user's computed threshold, ignored if metric does not use
+	 *            thresholds
+	 * @return similarity between test vector and average vector
+	 */
+	double compare(double[] testValues, double[] averageValues,
+			double[] deviations, int offset, int length, double threshold);
+
+	/**
+	 * Returns lowest similarity which metric can return.
+	 *
+	 * @return minimal similarity
+	 */
+	double getMinimum();
+
+	/**
+	 * Returns if metric needs individual thresholds of template.
+	 *
+	 * @return true if thresholds are used
+	 */
+	boolean usesThreshold();
+}
@@ -0,0 +1,41 @@
+package biosecLogger.core;
+
+/**
+ * Euclidean distance metric. Values with zero deviation are skipped. Loop is
+ * unrolled with four independent accumulators.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class EuclideanMetric extends ThresholdMetric {
+
+	@Override
+	public double compare(double[] testValues, double[] averageValues,
+			double[] deviations, int offset, int length, double threshold) {
+		double s0 = 0;
+		double s1 = 0;
+		double s2 = 0;
+		double s3 = 0;
+
+		int i = 0;
+		int k = offset;
+		for (; i + 3 < length; i += 4, k += 4) {
+			double d0 = testValues[i] - averageValues[k];
+			double d1 = testValues[i + 1] - averageValues[k + 1];
+			double d2 = testValues[i + 2] - averageValues[k + 2];
+			double d3 = testValues[i + 3] - averageValues[k + 3];
+
+			s0 += (deviations[k] == 0) ? 0 : d0 * d0;
+			s1 += (deviations[k + 1] == 0) ? 0 : d1 * d1;
+			s2 += (deviations[k + 2] == 0) ? 0 : d2 * d2;
+			s3 += (deviations[k + 3] == 0) ? 0 : d3 * d3;
+		}
+
+		for (; i < length; i++, k++) {
+			double d = testValues[i] - averageValues[k];
+			s0 += (deviations[k] == 0) ? 0 : d * d;
+		}
+
+		return similarity(Math.sqrt((s0 + s1) + (s2 + s3)), threshold);
+	}
+}
@@ -0,0 +1,158 @@
+package biosecLogger.core;
+
+/**
+ * Evaluation holds state of single evaluation of sample against template.
+ * Instance is created for every call, so LoginEvaluator does not keep any
+ * mutable state and can be shared between threads. Evaluation also owns
+ * n-graph buffers used during the call.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class Evaluation {
+
+	private NGraphs testGraphs;
+	private NGraphs averageGraphs;
+	private NGraphs deviationGraphs;
+
+	private int totalWeight;
+	private double weightedScore;
+	private boolean passed;
+	private boolean complete;
+
+	/**
+	 * Creates empty evaluation.
+	 *
+	 * @param graphs
+	 *            maximal number of n-graphs
+	 */
+	protected Evaluation(int graphs) {
+		testGraphs = new NGraphs(graphs);
+		averageGraphs = new NGraphs(graphs);
+		deviationGraphs = new NGraphs(graphs);
+	}
+
+	/**
+	 * Returns n-graph buffers of tested sample.
+	 *
+	 * @return n-graph generator
+	 */
+	protected NGraphs getTestGraphs() {
+		return testGraphs;
+	}
+
+	/**
+	 * Returns n-graph buffers of template averages.
+	 *
+	 * @return n-graph generator
+	 */
+	protected NGraphs getAverageGraphs() {
+		return averageGraphs;
+	}
+
+	/**
+	 * Returns n-graph buffers of template deviations.
+	 *
+	 * @return n-graph generator
+	 */
+	protected NGraphs getDeviationGraphs() {
+		return deviationGraphs;
+	}
+
+	/**
+	 * Sets total weight of evaluated metrics including failed rates.
+	 *
+	 * @param totalWeight
+	 *            total weight
+	 */
+	protected void setTotalWeight(int totalWeight) {
+		this.totalWeight = totalWeight;
+	}
+
+	/**
+	 * Returns total weight of evaluated metrics including failed rates.
+	 *
+	 * @return total weight
+	 */
+	public int getTotalWeight() {
+		return totalWeight;
+	}
+
+	/**
+	 * Adds weighted score of evaluated stage.
+	 *
+	 * @param score
+	 *            weighted score of stage
+	 */
+	protected void addScore(double score) {
+		weightedScore += score;
+	}
+
+	/**
+	 * Returns sum of weighted scores of evaluated stages.
+	 *
+	 * @return weighted score
+	 */
+	protected double getWeightedScore() {
+		return weightedScore;
+	}
+
+	/**
+	 * Finishes evaluation with result.
+	 *
+	 * @param passed
+	 *            true if sample passed
+	 * @param complete
+	 *            true if all stages were scored
+	 */
+	protected void finish(boolean passed, boolean complete) {
+		this.passed = passed;
+		this.complete = complete;
+	}
+
+	/**
+	 * Returns result of evaluation.
+	 *
+	 * @return true if sample passed, else false
+	 */
+	public boolean isPassed() {
+		return passed;
+	}
+
+	/**
+	 * Returns if all stages were scored. Evaluation stops early when outcome
+	 * is already decided.
+	 *
+	 * @return true if evaluation is complete
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns final score of sample. If evaluation stopped early, score
+	 * contains only already scored stages.
+	 *
+	 * @return final score
+	 */
+	public double getScore() {
+		return getFinalScore(weightedScore, totalWeight);
+	}
+
+	/**
+	 * Computes final score from weighted score. Undefined score, for example
+	 * from undefined threshold or without any weight, is negative infinity,
+	 * so it never passes and it can be sorted.
+	 *
+	 * @param weightedScore
+	 *            sum of weighted scores
+	 * @param totalWeight
+	 *            total weight
+	 * @return final score
+	 */
+	protected static double getFinalScore(double weightedScore,
+			int totalWeight) {
+		double score = weightedScore / totalWeight;
+		return Double.isNaN(score) ? Double.NEGATIVE_INFINITY : score;
+	}
+}
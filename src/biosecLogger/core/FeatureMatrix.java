@@ -0,0 +1,257 @@
+package biosecLogger.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FeatureMatrix is dense two-dimensional matrix of feature values. Rows are
+ * samples and columns are keys. Values are stored row by row in single
+ * primitive array and outliers are marked in separate bit set instead of
+ * removing values.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class FeatureMatrix {
+
+	private int rows;
+	private int cols;
+
+	private double[] data;
+	private long[] outliers;
+
+	/**
+	 * Creates matrix filled with zeros and without outliers.
+	 *
+	 * @param rows
+	 *            number of rows
+	 * @param cols
+	 *            number of columns
+	 */
+	public FeatureMatrix(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+
+		data = new double[rows * cols];
+		outliers = new long[(rows * cols + 63) >>> 6];
+	}
+
+	/**
+	 * Creates matrix which shares values with source matrix but has its own
+	 * empty outlier bit set.
+	 *
+	 * @param source
+	 *            source matrix
+	 */
+	public FeatureMatrix(FeatureMatrix source) {
+		rows = source.rows;
+		cols = source.cols;
+
+		data = source.data;
+		outliers = new long[source.outliers.length];
+	}
+
+	/**
+	 * Returns number of rows.
+	 *
+	 * @return number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns number of columns.
+	 *
+	 * @return number of columns
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Returns underlying row-major values.
+	 *
+	 * @return matrix values
+	 */
+	public double[] getData() {
+		return data;
+	}
+
+	/**
+	 * Returns single value.
+	 *
+	 * @param row
+	 *            index of row
+	 * @param col
+	 *            index of column
+	 * @return value
+	 */
+	public double get(int row, int col) {
+		return data[row * cols + col];
+	}
+
+	/**
+	 * Sets single value.
+	 *
+	 * @param row
+	 *            index of row
+	 * @param col
+	 *            index of column
+	 * @param value
+	 *            new value
+	 */
+	public void set(int row, int col, double value) {
+		data[row * cols + col] = value;
+	}
+
+	/**
+	 * Copies row from source array.
+	 *
+	 * @param row
+	 *            index of row
+	 * @param values
+	 *            source values, at least cols long
+	 */
+	public void setRow(int row, double[] values) {
+		System.arraycopy(values, 0, data, row * cols, cols);
+	}
+
+	/**
+	 * Marks value as outlier.
+	 *
+	 * @param row
+	 *            index of row
+	 * @param col
+	 *            index of column
+	 */
+	public void markOutlier(int row, int col) {
+		int bit = row * cols + col;
+		outliers[bit >>> 6] |= 1L << bit;
+	}
+
+	/**
+	 * Checks if value is marked as outlier.
+	 *
+	 * @param row
+	 *            index of row
+	 * @param col
+	 *            index of column
+	 * @return true if outlier
+	 */
+	public boolean isOutlier(int row, int col) {
+		int bit = row * cols + col;
+		return (outliers[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Checks if row contains any outlier.
+	 *
+	 * @param row
+	 *            index of row
+	 * @return true if at least one value of row is outlier
+	 */
+	public boolean hasOutlier(int row) {
+		int from = row * cols;
+		int to = from + cols;
+
+		while (from < to) {
+			int word = from >>> 6;
+			int end = Math.min(to, (word + 1) << 6);
+			long mask = (end - from == 64) ? -1L
+					: ((1L << (end - from)) - 1) << from;
+			if ((outliers[word] & mask) != 0) {
+				return true;
+			}
+			from = end;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Computes average vector and standard deviation vector of columns.
+	 * Outliers are skipped.
+	 *
+	 * @return array with average vector and standard deviation vector
+	 */
+	public double[][] computeAverageWithDeviation() {
+		double[] averages = new double[cols];
+		double[] deviations = new double[cols];
+		int[] sizes = new int[cols];
+
+		for (int r = 0; r < rows; r++) {
+			int offset = r * cols;
+			for (int c = 0; c < cols; c++) {
+				if (!isOutlier(r, c)) {
+					averages[c] += data[offset + c];
+					sizes[c]++;
+				}
+			}
+		}
+
+		for (int c = 0; c < cols; c++) {
+			averages[c] /= sizes[c];
+		}
+
+		for (int r = 0; r < rows; r++) {
+			int offset = r * cols;
+			for (int c = 0; c < cols; c++) {
+				if (!isOutlier(r, c)) {
+					double delta = data[offset + c] - averages[c];
+					deviations[c] += delta * delta;
+				}
+			}
+		}
+
+		for (int c = 0; c < cols; c++) {
+			deviations[c] = Math.sqrt(deviations[c] / sizes[c]);
+		}
+
+		return new double[][] { averages, deviations };
+	}
+
+	/**
+	 * Returns new matrix only with rows without outliers.
+	 *
+	 * @return matrix with clean rows
+	 */
+	public FeatureMatrix removeOutlierRows() {
+		int cleanRows = 0;
+		for (int r = 0; r < rows; r++) {
+			if (!hasOutlier(r)) {
+				cleanRows++;
+			}
+		}
+
+		FeatureMatrix matrix = new FeatureMatrix(cleanRows, cols);
+		int i = 0;
+		for (int r = 0; r < rows; r++) {
+			if (!hasOutlier(r)) {
+				System.arraycopy(data, r * cols, matrix.data, i * cols, cols);
+				i++;
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Converts matrix to two-dimensional list. Outliers are converted to null.
+	 *
+	 * @return two-dimensional list of values
+	 */
+	public List<List<Double>> toList() {
+		List<List<Double>> values = new ArrayList<List<Double>>();
+
+		for (int r = 0; r < rows; r++) {
+			List<Double> row = new ArrayList<Double>();
+			for (int c = 0; c < cols; c++) {
+				row.add(isOutlier(r, c) ? null : get(r, c));
+			}
+			values.add(row);
+		}
+
+		return values;
+	}
+}
@@ -1,8 +1,6 @@
 package biosecLogger.core;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -76,19 +74,19 @@ public class GrubbsTest {
 	 *            average value
 	 * @param deviation
 	 *            standard deviation
-	 * @param n
-	 *            number of vectors
+	 * @param g
+	 *            critical value
 	 * @return result of test as boolean
 	 */
 	private static boolean performGrubbsTest(double value, double average,
-			double deviation, int n) {
+			double deviation, double g) {
 		double z = getValueZ(value, average, deviation);
-		double g = getCriticalValue(n);
 		return z <= g ? true : false;
 	}
 
 	/**
-	 * Corrects values with ESD method. Substitutes extreme values with null.
+	 * Corrects values with ESD method. Extreme values are marked as outliers
+	 * in returned matrix, values itself are shared with source matrix.
 	 * 
 	 * @param values
 	 *            raw vectors
@@ -98,24 +96,19 @@ public class GrubbsTest {
 	 *            standard deviation vector
 	 * @return corrected vectors
 	 */
-	public static List<List<Double>> grubbsOutlierCorrection(
-			List<List<Double>> values, List<Double> averages,
-			List<Double> deviations) {
+	public static FeatureMatrix grubbsOutlierCorrection(FeatureMatrix values,
+			double[] averages, double[] deviations) {
 
-		List<List<Double>> newValues = new ArrayList<List<Double>>();
-		List<Double> newRow;
+		FeatureMatrix newValues = new FeatureMatrix(values);
+		double g = getCriticalValue(values.getRows());
 
-		for (List<Double> row : values) {
-			newRow = new ArrayList<Double>();
-			for (int i = 0; i < row.size(); i++) {
-				if (performGrubbsTest(row.get(i), averages.get(i),
-						deviations.get(i), values.size())) {
-					newRow.add(row.get(i));
-				} else {
-					newRow.add(null);
+		for (int r = 0; r < values.getRows(); r++) {
+			for (int c = 0; c < values.getCols(); c++) {
+				if (!performGrubbsTest(values.get(r, c), averages[c],
+						deviations[c], g)) {
+					newValues.markOutlier(r, c);
 				}
 			}
-			newValues.add(newRow);
 		}
 
 		return newValues;
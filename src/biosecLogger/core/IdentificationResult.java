@@ -0,0 +1,56 @@
+package biosecLogger.core;
+
+/**
+ * Result of identification of single sample against single template. Results
+ * are ordered by score from the best match.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class IdentificationResult implements Comparable<IdentificationResult> {
+
+	private String username;
+	private double score;
+
+	/**
+	 * Creates result of identification.
+	 *
+	 * @param username
+	 *            name of template's user
+	 * @param score
+	 *            final weighted score of sample
+	 */
+	protected IdentificationResult(String username, double score) {
+		this.username = username;
+		this.score = score;
+	}
+
+	/**
+	 * Returns name of template's user.
+	 *
+	 * @return name of user
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns final weighted score of sample. Sample passes when score is at
+	 * least sensitivity.
+	 *
+	 * @return final score
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public int compareTo(IdentificationResult another) {
+		return Double.compare(another.score, score);
+	}
+
+	@Override
+	public String toString() {
+		return username + ": " + score;
+	}
+}
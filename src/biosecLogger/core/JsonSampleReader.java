@@ -0,0 +1,183 @@
+package biosecLogger.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * JsonSampleReader reads biometric samples of JSON template directly from
+ * stream. Values of every array are read to primitive buffers and added to
+ * sample without building JSON objects. Sensor channels which are not
+ * evaluated are skipped.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class JsonSampleReader {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Reads JSON array of numbers.
+	 *
+	 * @param reader
+	 *            JSON stream positioned before array
+	 * @return read values
+	 * @throws IOException
+	 *             raises when stream could not be read
+	 */
+	private static double[] readDoubles(JsonReader reader) throws IOException {
+		double[] values = new double[DEFAULT_CAPACITY];
+		int size = 0;
+
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = reader.nextDouble();
+		}
+		reader.endArray();
+
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Reads JSON array of booleans.
+	 *
+	 * @param reader
+	 *            JSON stream positioned before array
+	 * @return read values
+	 * @throws IOException
+	 *             raises when stream could not be read
+	 */
+	private static boolean[] readBooleans(JsonReader reader)
+			throws IOException {
+		boolean[] values = new boolean[DEFAULT_CAPACITY];
+		int size = 0;
+
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = reader.nextBoolean();
+		}
+		reader.endArray();
+
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Checks if array has at least expected length.
+	 *
+	 * @param values
+	 *            length of read array or -1 when array was skipped
+	 * @param size
+	 *            number of keys
+	 * @throws IOException
+	 *             raises when array is missing or shorter
+	 */
+	private static void checkLength(int values, int size) throws IOException {
+		if (values < size) {
+			throw new IOException("Malformed sample");
+		}
+	}
+
+	/**
+	 * Reads single sample. Orientation and acceleration channels are read
+	 * only when they are evaluated according to flag, otherwise they are
+	 * filled with zeros.
+	 *
+	 * @param reader
+	 *            JSON stream positioned before sample object
+	 * @param flag
+	 *            evaluation flag
+	 * @return read sample
+	 * @throws IOException
+	 *             raises when stream could not be read or sample is malformed
+	 */
+	protected static KeystrokeSample readSample(JsonReader reader, int flag)
+			throws IOException {
+		boolean orientation = (flag & OptionsManager.ORIENTATION) == OptionsManager.ORIENTATION;
+		boolean accelerance = (flag & OptionsManager.ACCELERANCE) == OptionsManager.ACCELERANCE;
+
+		double[] flyingTimes = null;
+		boolean[] errors = null;
+		boolean[] substitutions = null;
+		double[] orientations = null;
+		double[] pressures = null;
+		double[][] values = new double[KeystrokeSample.CHANNELS][];
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+
+			if (key.equals("flyingTimes")) {
+				flyingTimes = readDoubles(reader);
+			} else if (key.equals("errors")) {
+				errors = readBooleans(reader);
+			} else if (key.equals("substitutions")) {
+				substitutions = readBooleans(reader);
+			} else if (key.equals("orientations")) {
+				orientations = readDoubles(reader);
+			} else if (key.equals("pressures")) {
+				pressures = readDoubles(reader);
+			} else if (orientation && key.equals("xAxises")) {
+				values[KeystrokeSample.ORIENTATION_X] = readDoubles(reader);
+			} else if (orientation && key.equals("yAxises")) {
+				values[KeystrokeSample.ORIENTATION_Y] = readDoubles(reader);
+			} else if (orientation && key.equals("zAxises")) {
+				values[KeystrokeSample.ORIENTATION_Z] = readDoubles(reader);
+			} else if (accelerance && key.equals("accXs")) {
+				values[KeystrokeSample.ACCELERANCE_X] = readDoubles(reader);
+			} else if (accelerance && key.equals("accYs")) {
+				values[KeystrokeSample.ACCELERANCE_Y] = readDoubles(reader);
+			} else if (accelerance && key.equals("accZs")) {
+				values[KeystrokeSample.ACCELERANCE_Z] = readDoubles(reader);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (flyingTimes == null) {
+			throw new IOException("Malformed sample");
+		}
+
+		int size = flyingTimes.length;
+		checkLength((errors != null) ? errors.length : -1, size);
+		checkLength((substitutions != null) ? substitutions.length : -1, size);
+		checkLength((orientations != null) ? orientations.length : -1, size);
+		checkLength((pressures != null) ? pressures.length : -1, size);
+
+		/* Sensor channels follow flying times */
+		for (int channel = KeystrokeSample.ACCELERANCE_X;
+				channel < KeystrokeSample.CHANNELS; channel++) {
+			if ((channel >= KeystrokeSample.ORIENTATION_X) ? orientation
+					: accelerance) {
+				checkLength((values[channel] != null) ? values[channel].length
+						: -1, size);
+			} else {
+				values[channel] = new double[size];
+			}
+		}
+
+		KeystrokeSample sample = new KeystrokeSample(size);
+		for (int i = 0; i < size; i++) {
+			sample.addKey(flyingTimes[i], substitutions[i], errors[i],
+					(int) orientations[i], pressures[i],
+					values[KeystrokeSample.ORIENTATION_X][i],
+					values[KeystrokeSample.ORIENTATION_Y][i],
+					values[KeystrokeSample.ORIENTATION_Z][i],
+					values[KeystrokeSample.ACCELERANCE_X][i],
+					values[KeystrokeSample.ACCELERANCE_Y][i],
+					values[KeystrokeSample.ACCELERANCE_Z][i]);
+		}
+
+		/* Sample is shared by evaluations, it is trimmed before */
+		sample.trim();
+		return sample;
+	}
+}
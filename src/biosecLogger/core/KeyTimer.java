@@ -0,0 +1,88 @@
+package biosecLogger.core;
+
+/**
+ * KeyTimer keeps times of last two text changes and measures flying times
+ * between keys. Times are taken from monotonic time source in nanoseconds and
+ * flying times keep fraction of millisecond. Times are changed only from main
+ * thread, time source can be read from any thread.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class KeyTimer {
+
+	private volatile TimeSource clock = TimeSource.SYSTEM;
+	private long backupTime;
+	private long curTime;
+
+	/**
+	 * Sets source of time. System time source is used by default.
+	 *
+	 * @param clock
+	 *            source of monotonic time
+	 */
+	protected void setTimeSource(TimeSource clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns current monotonic time in nanoseconds.
+	 *
+	 * @return time in nanos
+	 */
+	protected long getTime() {
+		return clock.nanoTime();
+	}
+
+	/**
+	 * Forgets times of previous keys.
+	 */
+	protected void reset() {
+		backupTime = 0;
+		curTime = 0;
+	}
+
+	/**
+	 * Checks if any key was marked since reset.
+	 *
+	 * @return true if key was marked, else false
+	 */
+	protected boolean isStarted() {
+		return curTime != 0;
+	}
+
+	/**
+	 * Marks time of text change. Time of previous change is kept for long
+	 * press, which substitutes last key.
+	 */
+	protected void markKey() {
+		backupTime = curTime;
+		curTime = getTime();
+	}
+
+	/**
+	 * Returns flying time from last marked key to now.
+	 *
+	 * @param longPress
+	 *            if true, time is measured from key before last marked key,
+	 *            because last key is substituted
+	 * @return flying time in millis
+	 */
+	protected double getFlyingTime(boolean longPress) {
+		return getTimeDifference(getTime(), longPress ? backupTime : curTime);
+	}
+
+	/**
+	 * Returns difference between two times in milliseconds. Fraction of
+	 * millisecond is kept.
+	 *
+	 * @param time1
+	 *            end time in nanos
+	 * @param time2
+	 *            start time in nanos
+	 * @return difference between times in millis
+	 */
+	private double getTimeDifference(long time1, long time2) {
+		return (time1 - time2) / 1e6;
+	}
+}
@@ -0,0 +1,318 @@
+package biosecLogger.core;
+
+import java.util.Arrays;
+
+/**
+ * Single biometric sample stored by columns. Every logged channel has its own
+ * primitive array and error and long press flags are packed into bit
+ * columns, so feature extraction is a plain array copy. Sample is built by
+ * single thread and trimmed before it is shared, it is not changed
+ * afterwards, so it can be read by concurrent evaluations without lock.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class KeystrokeSample {
+
+	/** Channel constants */
+	protected static final int FLYINGTIMES = 0;
+	protected static final int ACCELERANCE_X = 1;
+	protected static final int ACCELERANCE_Y = 2;
+	protected static final int ACCELERANCE_Z = 3;
+	protected static final int ORIENTATION_X = 4;
+	protected static final int ORIENTATION_Y = 5;
+	protected static final int ORIENTATION_Z = 6;
+	protected static final int CHANNELS = 7;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int size;
+
+	private double[][] channels;
+	private int[] orientations;
+	private double[] pressures;
+	private long[] errors;
+	private long[] longPresses;
+
+	/**
+	 * Creates empty sample.
+	 */
+	public KeystrokeSample() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates empty sample with preallocated capacity.
+	 *
+	 * @param capacity
+	 *            expected number of keys
+	 */
+	public KeystrokeSample(int capacity) {
+		size = 0;
+		allocate(capacity);
+	}
+
+	/**
+	 * Allocates storage with new capacity and copies actual keys.
+	 *
+	 * @param capacity
+	 *            new capacity
+	 */
+	private void allocate(int capacity) {
+		double[][] newChannels = new double[CHANNELS][capacity];
+		int[] newOrientations = new int[capacity];
+		double[] newPressures = new double[capacity];
+		long[] newErrors = new long[(capacity + 63) >>> 6];
+		long[] newLongPresses = new long[(capacity + 63) >>> 6];
+
+		if (channels != null) {
+			for (int i = 0; i < CHANNELS; i++) {
+				System.arraycopy(channels[i], 0, newChannels[i], 0, size);
+			}
+			System.arraycopy(orientations, 0, newOrientations, 0, size);
+			System.arraycopy(pressures, 0, newPressures, 0, size);
+			System.arraycopy(errors, 0, newErrors, 0, (size + 63) >>> 6);
+			System.arraycopy(longPresses, 0, newLongPresses, 0,
+					(size + 63) >>> 6);
+		}
+
+		channels = newChannels;
+		orientations = newOrientations;
+		pressures = newPressures;
+		errors = newErrors;
+		longPresses = newLongPresses;
+	}
+
+	/**
+	 * Sets or clears single bit.
+	 *
+	 * @param bits
+	 *            bit column
+	 * @param index
+	 *            index of key
+	 * @param value
+	 *            new value
+	 */
+	private static void setBit(long[] bits, int index, boolean value) {
+		if (value) {
+			bits[index >>> 6] |= 1L << index;
+		} else {
+			bits[index >>> 6] &= ~(1L << index);
+		}
+	}
+
+	/**
+	 * Returns single bit.
+	 *
+	 * @param bits
+	 *            bit column
+	 * @param index
+	 *            index of key
+	 * @return value of bit
+	 */
+	private static boolean getBit(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Counts set bits of first size keys.
+	 *
+	 * @param bits
+	 *            bit column
+	 * @return number of set bits
+	 */
+	private int countBits(long[] bits) {
+		int count = 0;
+		for (int i = 0; i < (size >>> 6); i++) {
+			count += Long.bitCount(bits[i]);
+		}
+		if ((size & 63) != 0) {
+			count += Long.bitCount(bits[size >>> 6] & ((1L << size) - 1));
+		}
+		return count;
+	}
+
+	/**
+	 * Appends key with logged values.
+	 *
+	 * @param flyingTime
+	 *            time between last touch and this touch
+	 * @param longPress
+	 *            boolean if key was long pressed (for key substitution)
+	 * @param error
+	 *            boolean if delete key was pressed
+	 * @param orientation
+	 *            orientation of display (up, right, left)
+	 * @param pressure
+	 *            pressure of key (works in API less than 14)
+	 * @param xAxis
+	 *            orientation X axis
+	 * @param yAxis
+	 *            orientation Y axis
+	 * @param zAxis
+	 *            orientation Z axis
+	 * @param accX
+	 *            accelerator X axis
+	 * @param accY
+	 *            accelerator Y axis
+	 * @param accZ
+	 *            accelerator Z axis
+	 */
+	protected void addKey(double flyingTime, boolean longPress, boolean error,
+			int orientation, double pressure, double xAxis, double yAxis,
+			double zAxis, double accX, double accY, double accZ) {
+		if (size == orientations.length) {
+			allocate(Math.max(DEFAULT_CAPACITY, size * 2));
+		}
+
+		channels[FLYINGTIMES][size] = flyingTime;
+		channels[ACCELERANCE_X][size] = accX;
+		channels[ACCELERANCE_Y][size] = accY;
+		channels[ACCELERANCE_Z][size] = accZ;
+		channels[ORIENTATION_X][size] = xAxis;
+		channels[ORIENTATION_Y][size] = yAxis;
+		channels[ORIENTATION_Z][size] = zAxis;
+
+		orientations[size] = orientation;
+		pressures[size] = pressure;
+		setBit(errors, size, error);
+		setBit(longPresses, size, longPress);
+
+		size++;
+	}
+
+	/**
+	 * Removes last key if any.
+	 */
+	protected void removeLastKey() {
+		if (size > 0) {
+			size--;
+		}
+	}
+
+	/**
+	 * Returns number of keys.
+	 *
+	 * @return number of keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Trims storage to number of keys. Sample must be trimmed before it is
+	 * shared between threads.
+	 */
+	protected void trim() {
+		if (orientations.length != size) {
+			allocate(size);
+		}
+	}
+
+	/**
+	 * Returns values of channel with exactly size values. Array of trimmed
+	 * sample is returned directly and must not be modified, untrimmed sample
+	 * returns copy.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @return values of channel
+	 */
+	protected double[] getChannel(int channel) {
+		if (channels[channel].length != size) {
+			return Arrays.copyOf(channels[channel], size);
+		}
+		return channels[channel];
+	}
+
+	/**
+	 * Returns single value of channel.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @param index
+	 *            index of key
+	 * @return value
+	 */
+	protected double getValue(int channel, int index) {
+		return channels[channel][index];
+	}
+
+	/**
+	 * Returns flying time of key.
+	 *
+	 * @param index
+	 *            index of key
+	 * @return flying time
+	 */
+	protected double getFlyingTime(int index) {
+		return channels[FLYINGTIMES][index];
+	}
+
+	/**
+	 * Returns error flag of key (true if delete key was pressed before key).
+	 *
+	 * @param index
+	 *            index of key
+	 * @return error
+	 */
+	protected boolean getError(int index) {
+		return getBit(errors, index);
+	}
+
+	/**
+	 * Returns long press flag of key.
+	 *
+	 * @param index
+	 *            index of key
+	 * @return long press
+	 */
+	protected boolean getLongPress(int index) {
+		return getBit(longPresses, index);
+	}
+
+	/**
+	 * Returns orientation of display of key (UP, LEFT, RIGHT).
+	 *
+	 * @param index
+	 *            index of key
+	 * @return orientation
+	 */
+	protected int getOrientation(int index) {
+		return orientations[index];
+	}
+
+	/**
+	 * Returns touch size of key (works in API less than 14).
+	 *
+	 * @param index
+	 *            index of key
+	 * @return pressure
+	 */
+	protected double getPressure(int index) {
+		return pressures[index];
+	}
+
+	/**
+	 * Returns number of keys typed after delete key.
+	 *
+	 * @return number of errors
+	 */
+	protected int getErrorCount() {
+		return countBits(errors);
+	}
+
+	/**
+	 * Returns number of long pressed keys.
+	 *
+	 * @return number of long presses
+	 */
+	protected int getLongPressCount() {
+		return countBits(longPresses);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(Arrays.copyOf(channels[FLYINGTIMES], size));
+	}
+}
@@ -0,0 +1,161 @@
+package biosecLogger.core;
+
+/**
+ * Leave-one-out engine computes individual thresholds for distance vector
+ * based algorithms. Every clean sample is compared against average of other
+ * samples. Averages without tested sample are derived from column sums, so
+ * thresholds cost O(n * m) instead of recomputing averages for every sample.
+ * Thresholds for all n-graphs are computed together.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class LeaveOneOut {
+
+	/**
+	 * Converts every row into n-graph values for n from 1 up to graphs. All
+	 * n-graphs of row are generated from single pass of prefix sums.
+	 *
+	 * @param values
+	 *            input values
+	 * @param graphs
+	 *            maximal number of n-graphs
+	 * @return n-graph matrices indexed by n - 1, null when row is too short
+	 */
+	protected static FeatureMatrix[] convertToNGraphs(FeatureMatrix values,
+			int graphs) {
+		FeatureMatrix[] nGraphs = new FeatureMatrix[graphs];
+		int rows = values.getRows();
+		int cols = values.getCols();
+
+		for (int n = 0; n < graphs && cols - n > 0; n++) {
+			nGraphs[n] = new FeatureMatrix(rows, cols - n);
+		}
+
+		NGraphs generator = new NGraphs(graphs);
+		double[] data = values.getData();
+		for (int r = 0; r < rows; r++) {
+			generator.compute(data, r * cols, cols);
+
+			for (int n = 0; n < graphs && nGraphs[n] != null; n++) {
+				nGraphs[n].setRow(r, generator.getSeries(n + 1));
+			}
+		}
+
+		return nGraphs;
+	}
+
+	/**
+	 * Computes threshold from single n-graph. Values are corrected with
+	 * Grubb's test against uncorrected averages and deviations first. When
+	 * every row has outlier, all rows are used, same as in Mahalanobis metric.
+	 *
+	 * @param values
+	 *            n-graph values
+	 * @param averages
+	 *            uncorrected average vector
+	 * @param deviations
+	 *            uncorrected standard deviation vector
+	 * @param algorithm
+	 *            distance vector algorithm (OptionsManager.MANHATTAN or
+	 *            OptionsManager.EUCLIDEAN)
+	 * @return threshold value
+	 */
+	private static double computeThreshold(FeatureMatrix values,
+			double[] averages, double[] deviations, int algorithm) {
+		FeatureMatrix corrected = GrubbsTest.grubbsOutlierCorrection(values,
+				averages, deviations);
+		for (int r = 0; r < corrected.getRows(); r++) {
+			if (!corrected.hasOutlier(r)) {
+				values = corrected;
+				break;
+			}
+		}
+
+		int rows = values.getRows();
+		int length = values.getCols();
+		double[] data = values.getData();
+
+		double[] sums = new double[length];
+		int[] counts = new int[length];
+
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < length; c++) {
+				if (!values.isOutlier(r, c)) {
+					sums[c] += data[r * length + c];
+					counts[c]++;
+				}
+			}
+		}
+
+		double threshold = 0;
+		int size = 0;
+
+		for (int r = 0; r < rows; r++) {
+			if (values.hasOutlier(r)) {
+				continue;
+			}
+
+			int offset = r * length;
+			double score = 0;
+			for (int c = 0; c < length; c++) {
+				/* Tested row is excluded twice, same as in template averages */
+				double value = data[offset + c];
+				double average = (sums[c] - value) / (counts[c] - 2);
+
+				switch (algorithm) {
+				case OptionsManager.MANHATTAN:
+					score += Math.abs(value - average);
+					break;
+				case OptionsManager.EUCLIDEAN:
+					score += Math.pow(value - average, 2);
+					break;
+				}
+			}
+
+			switch (algorithm) {
+			case OptionsManager.EUCLIDEAN:
+				score = Math.sqrt(score);
+				break;
+			}
+
+			threshold += score;
+			size++;
+		}
+
+		return (size == 0) ? 0 : threshold / size;
+	}
+
+	/**
+	 * Computes individual thresholds of channel for n-graphs from 1 up to
+	 * graphs.
+	 *
+	 * @param values
+	 *            extracted values of channel
+	 * @param statistics
+	 *            running statistics of user's samples
+	 * @param channel
+	 *            channel constant
+	 * @param graphs
+	 *            maximal number of n-graphs
+	 * @param algorithm
+	 *            distance vector algorithm (OptionsManager.MANHATTAN or
+	 *            OptionsManager.EUCLIDEAN)
+	 * @return thresholds indexed by n - 1
+	 */
+	protected static double[] computeThresholds(FeatureMatrix values,
+			SampleStatistics statistics, int channel, int graphs,
+			int algorithm) {
+		double[] thresholds = new double[graphs];
+		FeatureMatrix[] nGraphs = convertToNGraphs(values, graphs);
+
+		for (int n = 0; n < graphs && nGraphs[n] != null; n++) {
+			double[][] result = statistics.getAverageWithDeviation(channel,
+					n + 1, nGraphs[n].getCols());
+			thresholds[n] = computeThreshold(nGraphs[n], result[0],
+					result[1], algorithm);
+		}
+
+		return thresholds;
+	}
+}
@@ -1,13 +1,13 @@
 package biosecLogger.core;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
@@ -19,7 +19,10 @@ import android.view.WindowManager;
 
 /**
  * Logger is attached to password field and using TextWatcher and
- * SensorEvenTListener log values during login or registration.
+ * SensorEvenTListener log values during login or registration. Sensor events
+ * are processed on separate capture thread, so they do not delay key events on
+ * main thread. Readings are handed to main thread through lock-free ring
+ * buffers.
  * 
  * @author Stefan Smihla
  * 
@@ -36,20 +39,19 @@ public enum Logger implements TextWatcher, SensorEventListener {
 	private Display display;
 	private ServiceHandler serviceHandler;
 
-	private List<LoggedKey> tempKeys;
-	private List<LoggedKey> rowKeys;
+	private KeystrokeSample tempKeys;
+	private KeystrokeSample rowKeys;
 
 	private boolean keyDel;
 	private boolean longPress;
 
-	private long backupTime;
-	private long curTime;
+	private final KeyTimer keyTimer = new KeyTimer();
 	
 	private double prevAxisX;
 	private double prevAxisY;
 	private double prevAxisZ;
 
-	private long flyingTime;
+	private double flyingTime;
 	private double pressure;
 	private boolean error;
 
@@ -103,9 +105,8 @@ public enum Logger implements TextWatcher, SensorEventListener {
 	 * Initialize values on create or submit.
 	 */
 	protected void initValues() {
-		tempKeys = new ArrayList<LoggedKey>();
-		backupTime = 0;
-		curTime = 0;
+		tempKeys = new KeystrokeSample();
+		keyTimer.reset();
 		keyDel = false;
 
 		longPress = false;
@@ -129,16 +130,16 @@ public enum Logger implements TextWatcher, SensorEventListener {
 		/* This code works good, refactoring could be dangerous */
 		if (count == 1) {
 
-			if (curTime != 0) {
+			if (keyTimer.isStarted()) {
 				/* When not first key */
 
 				if (longPress) {
 					/* Remove key on long press when specific key is substituted to special key */
 
-					flyingTime = getTimeDifference(getTime(), backupTime);
+					flyingTime = keyTimer.getFlyingTime(true);
 					removeLastKey();
 				} else {
-					flyingTime = getTimeDifference(getTime(), curTime);
+					flyingTime = keyTimer.getFlyingTime(false);
 				}
 			}
 
@@ -157,8 +158,7 @@ public enum Logger implements TextWatcher, SensorEventListener {
 		}
 
 		if ((start != 0 || before == 0) && !longPress) {
-			backupTime = curTime;
-			curTime = getTime();
+			keyTimer.markKey();
 		}
 	}
 
@@ -190,25 +190,22 @@ public enum Logger implements TextWatcher, SensorEventListener {
 	}
 
 	/**
-	 * Returns current time in milliseconds.
+	 * Sets source of time. System time source is used by default.
 	 * 
-	 * @return time in millis
+	 * @param clock
+	 *            source of monotonic time
 	 */
-	private long getTime() {
-		return System.currentTimeMillis();
+	protected void setTimeSource(TimeSource clock) {
+		keyTimer.setTimeSource(clock);
 	}
 
 	/**
-	 * Returns difference between two times.
+	 * Returns current monotonic time in nanoseconds.
 	 * 
-	 * @param time1
-	 *            start time
-	 * @param time2
-	 *            end time
-	 * @return difference between times
+	 * @return time in nanos
 	 */
-	private long getTimeDifference(long time1, long time2) {
-		return time1 - time2;
+	private long getTime() {
+		return keyTimer.getTime();
 	}
 
 	/**
@@ -218,6 +215,8 @@ public enum Logger implements TextWatcher, SensorEventListener {
 		double deltaAxisX = 0;
 		double deltaAxisY = 0;
 		double deltaAxisZ = 0;
+
+		updateSensors(getTime());
 		
 		if (tempKeys.size() == 0) {
 			flyingTime = 0;
@@ -230,8 +229,8 @@ public enum Logger implements TextWatcher, SensorEventListener {
 			deltaAxisZ = zAxis - prevAxisZ;
 		}
 
-		tempKeys.add(new LoggedKey(flyingTime, longPress, error, display
-				.getRotation(), pressure, deltaAxisX, deltaAxisY, deltaAxisZ, accX, accY, accZ));
+		tempKeys.addKey(flyingTime, longPress, error, display.getRotation(),
+				pressure, deltaAxisX, deltaAxisY, deltaAxisZ, accX, accY, accZ);
 		
 		prevAxisX = xAxis;
 		prevAxisY = yAxis;
@@ -243,24 +242,42 @@ public enum Logger implements TextWatcher, SensorEventListener {
 	 */
 	private void removeLastKey() {
 		if (tempKeys.size() != 0) {
-			if (tempKeys.get(tempKeys.size() - 1).getError() == true) {
+			if (tempKeys.getError(tempKeys.size() - 1) == true) {
 				error = true;
 			}
-			tempKeys.remove(tempKeys.size() - 1);
+			tempKeys.removeLastKey();
 		}
 	}
 
 	/**
-	 * Submits single biometrics sample and reinitialize logger.
+	 * Submits single biometrics sample and reinitialize logger. Sample is
+	 * trimmed, because it is evaluated on submit thread.
 	 * 
-	 * @return list of logged keys
+	 * @return biometric sample
 	 */
-	protected List<LoggedKey> submit() {
+	protected KeystrokeSample submit() {
+		tempKeys.trim();
 		rowKeys = tempKeys;
 		initValues();
 		return rowKeys;
 	}
 
+	/**
+	 * Returns handler of capture thread. Thread is started when logging
+	 * starts first time.
+	 * 
+	 * @return handler of capture thread
+	 */
+	private Handler getCaptureHandler() {
+		if (captureHandler == null) {
+			HandlerThread thread = new HandlerThread("BiosecSensors",
+					Process.THREAD_PRIORITY_MORE_FAVORABLE);
+			thread.start();
+			captureHandler = new Handler(thread.getLooper());
+		}
+		return captureHandler;
+	}
+
 	/**
 	 * Binds all listeners when logging starts or resumes.
 	 */
@@ -269,10 +286,22 @@ public enum Logger implements TextWatcher, SensorEventListener {
 			serviceHandler.runService();
 		}
 
+		Handler handler = getCaptureHandler();
+
+		/* Readings from previous logging are too old */
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				accelerometerReadings.clear();
+				magnetometerReadings.clear();
+				timeOffset = Long.MAX_VALUE;
+			}
+		});
+
 		sensorManager.registerListener(this, accelerometer,
-				SensorManager.SENSOR_DELAY_UI);
+				SensorManager.SENSOR_DELAY_GAME, handler);
 		sensorManager.registerListener(this, magnetometer,
-				SensorManager.SENSOR_DELAY_UI);
+				SensorManager.SENSOR_DELAY_GAME, handler);
 	}
 
 	/**
@@ -287,10 +316,35 @@ public enum Logger implements TextWatcher, SensorEventListener {
 		sensorManager.unregisterListener(this, magnetometer);
 	}
 
+	private Handler captureHandler;
+
+	/* Fields below up to readings are used only on capture thread */
 	private final float alpha = 0.8f;
 	private float gravity[] = { 0, 0, 0 };
-	private float[] mGravity;
-	private float[] mGeomagnetic;
+	private final float[] reading = new float[6];
+
+	/** Number of readings kept per sensor, about one second of readings */
+	private static final int READINGS = 64;
+
+	/* Accelerometer reading holds raw values and filtered acceleration */
+	private static final int RAW = 0;
+	private static final int FILTERED = 3;
+
+	private final SensorRingBuffer accelerometerReadings = new SensorRingBuffer(
+			READINGS, 6);
+	private final SensorRingBuffer magnetometerReadings = new SensorRingBuffer(
+			READINGS, 3);
+
+	/** Smallest difference between time source and sensor timestamp */
+	private volatile long timeOffset = Long.MAX_VALUE;
+
+	/* Scratch buffers of main thread, reused for every key */
+	private final float[] accelerometerState = new float[6];
+	private final float[] mGravity = new float[3];
+	private final float[] mGeomagnetic = new float[3];
+	private final float[] rotation = new float[9];
+	private final float[] inclination = new float[9];
+	private final float[] orientation = new float[3];
 
 	@Override
 	public void onAccuracyChanged(Sensor arg0, int arg1) {
@@ -298,34 +352,113 @@ public enum Logger implements TextWatcher, SensorEventListener {
 
 	@Override
 	public void onSensorChanged(SensorEvent event) {
-		if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-			/* Acceleration delta between key presses */
-			mGravity = event.values;
-			gravity[0] = alpha * gravity[0] + (1 - alpha) * event.values[0];
-			gravity[1] = alpha * gravity[1] + (1 - alpha) * event.values[1];
-			gravity[2] = alpha * gravity[2] + (1 - alpha) * event.values[2];
-
-			accX = event.values[0] - gravity[0];
-			accY = event.values[1] - gravity[1];
-			accZ = event.values[2] - gravity[2];
+		int type = event.sensor.getType();
+
+		if (type == Sensor.TYPE_ACCELEROMETER) {
+			addAccelerometerReading(event.timestamp, event.values);
+		} else if (type == Sensor.TYPE_MAGNETIC_FIELD) {
+			addMagnetometerReading(event.timestamp, event.values);
 		}
+	}
 
-		if (event.sensor.getType() == Sensor.TYPE_MAGNETIC_FIELD) {
-			mGeomagnetic = event.values;
+	/**
+	 * Updates offset between sensor timestamps and time source. Sensor
+	 * timestamps do not have to use the same clock as time source, offset
+	 * with the smallest delivery delay maps them to it.
+	 * 
+	 * @param timestamp
+	 *            sensor timestamp in nanoseconds
+	 */
+	private void updateTimeOffset(long timestamp) {
+		timeOffset = Math.min(timeOffset, getTime() - timestamp);
+	}
+
+	/**
+	 * Buffers accelerometer reading with filtered acceleration. Method must
+	 * be called only from capture thread.
+	 * 
+	 * @param timestamp
+	 *            sensor timestamp in nanoseconds
+	 * @param values
+	 *            acceleration on x, y and z axis
+	 */
+	protected void addAccelerometerReading(long timestamp, float[] values) {
+		updateTimeOffset(timestamp);
+
+		/* Acceleration delta between key presses */
+		gravity[0] = alpha * gravity[0] + (1 - alpha) * values[0];
+		gravity[1] = alpha * gravity[1] + (1 - alpha) * values[1];
+		gravity[2] = alpha * gravity[2] + (1 - alpha) * values[2];
+
+		System.arraycopy(values, 0, reading, RAW, 3);
+		reading[FILTERED] = values[0] - gravity[0];
+		reading[FILTERED + 1] = values[1] - gravity[1];
+		reading[FILTERED + 2] = values[2] - gravity[2];
+
+		accelerometerReadings.add(timestamp, reading);
+	}
+
+	/**
+	 * Buffers magnetometer reading. Method must be called only from capture
+	 * thread.
+	 * 
+	 * @param timestamp
+	 *            sensor timestamp in nanoseconds
+	 * @param values
+	 *            magnetic field on x, y and z axis
+	 */
+	protected void addMagnetometerReading(long timestamp, float[] values) {
+		updateTimeOffset(timestamp);
+		magnetometerReadings.add(timestamp, values);
+	}
+
+	/**
+	 * Interpolates buffered readings at time of key into scratch buffers of
+	 * main thread. Acceleration is set when accelerometer has any reading.
+	 * 
+	 * @param keyTime
+	 *            time of key from time source
+	 * @return true if both sensors have any reading, else false
+	 */
+	protected boolean interpolateSensors(long keyTime) {
+		long time = keyTime - timeOffset;
+
+		if (!accelerometerReadings.interpolate(time, accelerometerState)) {
+			return false;
 		}
 
-		if (mGravity != null && mGeomagnetic != null) {
-			float R[] = new float[9];
-			float I[] = new float[9];
-
-			if (SensorManager.getRotationMatrix(R, I, mGravity, mGeomagnetic)) {
-				float orientation[] = new float[3];
-				SensorManager.getOrientation(R, orientation);
-				
-				xAxis = (float) Math.toDegrees(orientation[1]) + 180;
-				yAxis = (float) Math.toDegrees(orientation[2]) + 180;
-				zAxis = (float) Math.toDegrees(orientation[0]) + 180;
-			}
+		accX = accelerometerState[FILTERED];
+		accY = accelerometerState[FILTERED + 1];
+		accZ = accelerometerState[FILTERED + 2];
+
+		if (!magnetometerReadings.interpolate(time, mGeomagnetic)) {
+			return false;
+		}
+		System.arraycopy(accelerometerState, RAW, mGravity, 0, 3);
+		return true;
+	}
+
+	/**
+	 * Sets acceleration and orientation to sensor state at time of key.
+	 * State is interpolated from buffered readings, so it does not depend on
+	 * when the last reading arrived. Orientation is computed only here, not
+	 * for every reading.
+	 * 
+	 * @param keyTime
+	 *            time of key from time source
+	 */
+	private void updateSensors(long keyTime) {
+		if (!interpolateSensors(keyTime)) {
+			return;
+		}
+
+		if (SensorManager.getRotationMatrix(rotation, inclination, mGravity,
+				mGeomagnetic)) {
+			SensorManager.getOrientation(rotation, orientation);
+
+			xAxis = (float) Math.toDegrees(orientation[1]) + 180;
+			yAxis = (float) Math.toDegrees(orientation[2]) + 180;
+			zAxis = (float) Math.toDegrees(orientation[0]) + 180;
 		}
 	}
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import android.view.WindowManager;
 
 /**
  * Service is supposed to log pressure. Works only on android API less than 14.
+ * Pressure of every touch is published to ServiceHandler in the same process.
  * 
  * @author Stefan Smihla
  * 
@@ -20,8 +21,6 @@ import android.view.WindowManager;
 @SuppressLint("InlinedApi")
 public class LoggerService extends Service {
 
-	public final static String SCREEN_TOUCHED = "Key Pressed";
-	private Intent sender;
 	private View myView;
 
 	@Override
@@ -32,8 +31,6 @@ public class LoggerService extends Service {
 	@Override
 	public void onCreate() {
 		super.onCreate();
-		sender = new Intent();
-		sender.setAction(SCREEN_TOUCHED);
 
 		WindowManager.LayoutParams params = new WindowManager.LayoutParams(
 				WindowManager.LayoutParams.TYPE_SYSTEM_OVERLAY,
@@ -47,8 +44,7 @@ public class LoggerService extends Service {
 		OnTouchListener toucher = new OnTouchListener() {
 			@Override
 			public boolean onTouch(View v, MotionEvent event) {
-				sender.putExtra("pressure", event.getSize());
-				sendBroadcast(sender);
+				ServiceHandler.INSTANCE.publishPressure(event.getSize());
 				return false;
 			}
 		};
@@ -1,10 +1,15 @@
 package biosecLogger.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Class evaluates user's biometric sample against biometric template.
+ * Evaluation settings are taken when evaluator is created and state of every
+ * evaluation is kept in Evaluation object, so single evaluator can be shared
+ * between threads.
  * 
  * @author Stefan Smihla
  * 
@@ -12,15 +17,42 @@ import java.util.List;
 public class LoginEvaluator {
 	private OptionsManager om;
 
+	private int flag;
+	private int graphs;
+	private double sensitivity;
+
 	private int flyingTimesWeight;
 	private int errorRateWeight;
 	private int substituteRateWeight;
 	private int acceleratorWeight;
 	private int orientationWeight;
-	private int totalWeight;
+
+	private int[] stages;
+
+	private static final int[] FLYINGTIMES_CHANNELS = { KeystrokeSample.FLYINGTIMES };
+	private static final int[] ACCELERANCE_CHANNELS = {
+			KeystrokeSample.ACCELERANCE_X, KeystrokeSample.ACCELERANCE_Y,
+			KeystrokeSample.ACCELERANCE_Z };
+	private static final int[] ORIENTATION_CHANNELS = {
+			KeystrokeSample.ORIENTATION_X, KeystrokeSample.ORIENTATION_Y,
+			KeystrokeSample.ORIENTATION_Z };
+
+	private DistanceMetric metric;
+
+	/** Parts of final score, channel stages first and rates last */
+	protected static final int[] PARTS = { OptionsManager.FLYINGTIMES,
+			OptionsManager.ACCELERANCE, OptionsManager.ORIENTATION,
+			OptionsManager.LONGPRESSRATE, OptionsManager.ERRORRATE };
+
+	/** Number of channel stages in parts */
+	private static final int STAGE_PARTS = 3;
+
+	private static final int LONGPRESSRATE_PART = 3;
+	private static final int ERRORRATE_PART = 4;
 
 	/**
-	 * Initialize instance of LoginEvaluator
+	 * Initialize instance of LoginEvaluator. Later changes of settings do not
+	 * affect created evaluator.
 	 * 
 	 * @param oManager
 	 *            evaluation accuracy settings
@@ -28,318 +60,488 @@ public class LoginEvaluator {
 	protected LoginEvaluator(OptionsManager oManager) {
 		om = oManager;
 
+		flag = oManager.getFlag();
+		graphs = oManager.getGraphs();
+		sensitivity = oManager.getSensitivity();
+
 		flyingTimesWeight = 5;
 		errorRateWeight = 1;
 		substituteRateWeight = 2;
 		acceleratorWeight = 5;
 		orientationWeight = 5;
+
+		/* Stages ordered by weight, cheaper stage first on equal weight */
+		stages = new int[] { OptionsManager.FLYINGTIMES,
+				OptionsManager.ACCELERANCE, OptionsManager.ORIENTATION };
+		for (int i = 1; i < stages.length; i++) {
+			int stage = stages[i];
+			int j = i;
+			while (j > 0 && getStageWeight(stage) > getStageWeight(stages[j - 1])) {
+				stages[j] = stages[j - 1];
+				j--;
+			}
+			stages[j] = stage;
+		}
+
+		metric = createMetric(oManager);
 	}
 
 	/**
-	 * Compares single value in t-tests method.
+	 * Creates distance metric for evaluation algorithm. Mahalanobis metric is
+	 * bound to compiled template, so null is returned for it.
 	 * 
-	 * @param templateValue
-	 *            average template value
-	 * @param templateDeviation
-	 *            standard deviation of template
-	 * @param testValue
-	 *            value which is compared against average
-	 * @return boolean with result if passed or not
+	 * @param oManager
+	 *            evaluation accuracy settings
+	 * @return distance metric or null if metric is taken from template
 	 */
-	private boolean compareSampleValue(double templateValue,
-			double templateDeviation, double testValue) {
-		double actMin = (1 - om.getThresholdP()) * templateValue
-				- templateDeviation;
-		double actMax = (1 + om.getThresholdP()) * templateValue
-				+ templateDeviation;
-
-		/*
-		 * if (actMax - actMin == 0){ return 1; } else { return 1 / (16 *
-		 * Math.pow((templateValue - testValue) / (actMax - actMin), 4) + 1);
-		 * //return 1 / (4 * Math.pow((templateValue - testValue) / (actMax -
-		 * actMin), 2) + 1); }
-		 */
-
-		return (testValue >= actMin && testValue <= actMax) ? true : false;
+	protected static DistanceMetric createMetric(OptionsManager oManager) {
+		switch (oManager.getEvaluationAlgorithm()) {
+		case OptionsManager.MANHATTAN:
+			return new ManhattanMetric();
+		case OptionsManager.EUCLIDEAN:
+			return new EuclideanMetric();
+		case OptionsManager.MAHALANOBIS:
+			return null;
+		default:
+			return new TTestMetric(oManager);
+		}
 	}
 
 	/**
-	 * Converts values to n-graph values.
+	 * Evaluates single channel for all n-graphs. N-graphs of sample, average
+	 * and deviation vectors are generated once per channel.
 	 * 
+	 * @param ev
+	 *            actual evaluation
+	 * @param ct
+	 *            compiled template of user
 	 * @param values
-	 *            raw unconverted values
-	 * @param n
-	 *            number of graphs
-	 * @return converted values
+	 *            test vector of channel
+	 * @param channel
+	 *            channel constant
+	 * @return sum of n-graph scores
 	 */
-	private List<Double> getGraphs(List<Double> values, int n) {
-		List<Double> graphs = new ArrayList<Double>();
-		double value;
+	private double getChannelScore(Evaluation ev, CompiledTemplate ct,
+			double[] values, int channel) {
+		NGraphs testGraphs = ev.getTestGraphs();
+		NGraphs averageGraphs = ev.getAverageGraphs();
+		NGraphs deviationGraphs = ev.getDeviationGraphs();
+		double score = 0;
 
-		if (n == 0) {
-			n++;
-		}
+		testGraphs.compute(values);
+		averageGraphs.compute(ct.getAverages(channel));
+		deviationGraphs.compute(ct.getDeviations(channel));
 
-		for (int i = 0; i < values.size() + 1 - n; i++) {
-			value = 0;
-			for (int j = 0; j < n; j++) {
-				value += values.get(i);
-			}
-			graphs.add(value);
+		for (int j = 1; j <= graphs; j++) {
+			int length = Math.min(testGraphs.getLength(j),
+					averageGraphs.getLength(j));
+
+			DistanceMetric channelMetric = (metric != null) ? metric : ct
+					.getMetric(channel, j);
+
+			score += channelMetric.compare(testGraphs.getSeries(j),
+					averageGraphs.getSeries(j), deviationGraphs.getSeries(j), 0,
+					length, channelMetric.usesThreshold() ? ct.getThreshold(
+							channel, j) : 0);
 		}
 
-		return graphs;
+		return score;
 	}
 
 	/**
-	 * Distance vector based comparison.
+	 * Returns channels evaluated in stage.
 	 * 
-	 * @param testValues
-	 *            test vector of values
-	 * @param averageValues
-	 *            average vector of values
-	 * @param deviations
-	 *            standard deviation vector of values
-	 * @param threshold
-	 *            user's computed threshold
-	 * @param algorithm
-	 *            evaluation distance algorithm
-	 * @return similarity between test vector and average vector
+	 * @param stage
+	 *            flag of stage
+	 * @return channel constants
 	 */
-	private double distanceComparision(List<Double> testValues,
-			List<Double> averageValues, List<Double> deviations,
-			double threshold, int algorithm) {
-
-		double score = 0;
-
-		for (int i = 0; i < testValues.size(); i++) {
-			if (deviations.get(i) == 0) {
-				continue;
-			}
-
-			switch (algorithm) {
-			case OptionsManager.MANHATTAN:
-				score += Math.abs((testValues.get(i) - averageValues.get(i)));
-				break;
-			case OptionsManager.EUCLIDEAN:
-				score += Math.pow(testValues.get(i) - averageValues.get(i), 2);
-				break;
-			// case UserLoggerManager.MAHALANOBIS:
-			// score += Math.pow((testValues.get(i) - averageValues.get(i)) /
-			// deviations.get(i), 2);
-			// break;
-			}
-		}
-
-		switch (algorithm) {
-		case OptionsManager.EUCLIDEAN:
-			score = Math.sqrt(score);
-			break;
+	private static int[] getStageChannels(int stage) {
+		switch (stage) {
+		case OptionsManager.FLYINGTIMES:
+			return FLYINGTIMES_CHANNELS;
+		case OptionsManager.ACCELERANCE:
+			return ACCELERANCE_CHANNELS;
+		case OptionsManager.ORIENTATION:
+			return ORIENTATION_CHANNELS;
+		default:
+			return new int[0];
 		}
-
-		return (score <= threshold) ? 1 : 1 - Math.abs(1 - (score / threshold));
 	}
 
 	/**
-	 * T-test based vector comparison
+	 * Returns weight of evaluation stage.
 	 * 
-	 * @param testValues
-	 *            test vector of values
-	 * @param averageValues
-	 *            average vector of values
-	 * @param deviations
-	 *            standard deviation vector of values
-	 * @return similarity between test vector and average vector
+	 * @param stage
+	 *            flag of stage
+	 * @return weight of stage
 	 */
-	private double tTestComparision(List<Double> testValues,
-			List<Double> averageValues, List<Double> deviations) {
-		double testPassed = 0;
-		double testTotal = testValues.size();
-
-		double average;
-		double deviation;
-		double value;
-
-		for (int i = 0; i < testValues.size(); i++) {
-			average = averageValues.get(i);
-			deviation = deviations.get(i);
-			value = testValues.get(i);
-
-			if (compareSampleValue(Math.abs(average), Math.abs(deviation),
-					Math.abs(value))) {
-				testPassed += 1;
-			}
+	private int getStageWeight(int stage) {
+		switch (stage) {
+		case OptionsManager.FLYINGTIMES:
+			return flyingTimesWeight;
+		case OptionsManager.ACCELERANCE:
+			return acceleratorWeight;
+		case OptionsManager.ORIENTATION:
+			return orientationWeight;
+		default:
+			return 0;
 		}
-
-		testPassed /= testTotal;
-
-		return testPassed;
 	}
 
 	/**
-	 * Evaluates acceleration score.
+	 * Evaluates weighted score of evaluation stage.
 	 * 
-	 * @param ut
-	 *            template of user
+	 * @param ev
+	 *            actual evaluation
+	 * @param stage
+	 *            flag of stage
+	 * @param ct
+	 *            compiled template of user
 	 * @param us
 	 *            test sample
-	 * @return acceleration score
+	 * @return weighted score of stage
 	 */
-	private double getAcceleratorScore(UserTemplate ut, LoggedRow us) {
+	private double getStageScore(Evaluation ev, int stage,
+			CompiledTemplate ct, LoggedRow us) {
+		int[] channels = getStageChannels(stage);
 		double score = 0;
 
-		for (int i = UserTemplate.X_AXIS; i <= UserTemplate.Z_AXIS; i++) {
-			for (int j = 1; j <= om.getGraphs(); j++) {
-				switch (om.getEvaluationAlgorithm()) {
-				case OptionsManager.T_TESTS:
-					score += tTestComparision(getGraphs(us.getAccs(i), j),
-							getGraphs(ut.getAvgAccs(i), j),
-							getGraphs(ut.getDeviationAccs(i), j));
-					break;
-				case OptionsManager.MANHATTAN:
-				case OptionsManager.EUCLIDEAN:
-					score += distanceComparision(
-							getGraphs(us.getAccs(i), j),
-							getGraphs(ut.getAvgAccs(i), j),
-							getGraphs(ut.getDeviationAccs(i), j),
-							ut.getThreshold(ut.getAccs(i), j,
-									om.getEvaluationAlgorithm()),
-							om.getEvaluationAlgorithm());
-					break;
-				}
-			}
+		for (int channel : channels) {
+			score += getChannelScore(ev, ct, us.getValues(channel), channel);
 		}
 
-		score /= (3 * om.getGraphs());
-		totalWeight += acceleratorWeight;
-		return score * acceleratorWeight;
+		score /= (channels.length * graphs);
+		return score * getStageWeight(stage);
+	}
+
+	/**
+	 * Evaluates error or long press rate.
+	 * 
+	 * @param sampleRate
+	 *            test values
+	 * @param templateRate
+	 *            template values
+	 * @param weight
+	 *            weight of metric
+	 * @return weight if not passed, else 0
+	 */
+	private int evaluateRate(double sampleRate, double templateRate, int weight) {
+		if (sampleRate > Math.ceil(templateRate)
+				|| sampleRate < Math.floor(templateRate)) {
+			return weight;
+		}
+		return 0;
 	}
 
 	/**
-	 * Evaluates orientation score.
+	 * Evaluates enabled error and long press rates. Failed rates only
+	 * increase total weight.
 	 * 
-	 * @param ut
-	 *            template of user
 	 * @param us
 	 *            test sample
-	 * @return orientation score
+	 * @param longPressRate
+	 *            long press rate of template
+	 * @param errorRate
+	 *            error rate of template
+	 * @return weight of failed rates
 	 */
-	private double getOrientationScore(UserTemplate ut, LoggedRow us) {
-		double score = 0;
+	private int evaluateRates(LoggedRow us, double longPressRate,
+			double errorRate) {
+		int weight = 0;
 
-		for (int i = UserTemplate.X_AXIS; i <= UserTemplate.Z_AXIS; i++) {
-			for (int j = 1; j <= om.getGraphs(); j++) {
-				switch (om.getEvaluationAlgorithm()) {
-				case OptionsManager.T_TESTS:
-					score += tTestComparision(getGraphs(us.getAxises(i), j),
-							getGraphs(ut.getAvgAxises(i), j),
-							getGraphs(ut.getDeviationAxises(i), j));
-					break;
-				case OptionsManager.MANHATTAN:
-				case OptionsManager.EUCLIDEAN:
-					score += distanceComparision(
-							getGraphs(us.getAxises(i), j),
-							getGraphs(ut.getAvgAxises(i), j),
-							getGraphs(ut.getDeviationAxises(i), j),
-							ut.getThreshold(ut.getAxises(i), j,
-									om.getEvaluationAlgorithm()),
-							om.getEvaluationAlgorithm());
-					break;
-				}
+		if ((flag & OptionsManager.LONGPRESSRATE) == OptionsManager.LONGPRESSRATE)
+			weight += evaluateRate(us.getLongPressCount(), longPressRate,
+					substituteRateWeight);
+		if ((flag & OptionsManager.ERRORRATE) == OptionsManager.ERRORRATE)
+			weight += evaluateRate(us.getErrorCount(), errorRate,
+					errorRateWeight);
+
+		return weight;
+	}
+
+	/**
+	 * Returns sum of weights of enabled channel stages.
+	 * 
+	 * @return weight of stages
+	 */
+	private int getStagesWeight() {
+		int weight = 0;
+		for (int stage : stages) {
+			if ((flag & stage) == stage) {
+				weight += getStageWeight(stage);
 			}
 		}
+		return weight;
+	}
+
+	/*************************************************************************/
 
-		score /= (3 * om.getGraphs());
-		totalWeight += orientationWeight;
-		return score * orientationWeight;
+	/**
+	 * Checks biometric sample against biometric template. Template is compiled
+	 * from user's raw data.
+	 * 
+	 * @param user
+	 *            tested user template
+	 * @param row
+	 *            tested sample
+	 * @return boolean if passed or not
+	 */
+	protected boolean checkPatter(UserModel user, KeystrokeSample row) {
+		return checkPatter(new CompiledTemplate(user, om), row);
 	}
 
 	/**
-	 * Evaluates flying time score.
+	 * Checks biometric sample against compiled biometric template.
 	 * 
-	 * @param ut
-	 *            template of user
-	 * @param us
-	 *            test sample
-	 * @return flying time score
+	 * @param ct
+	 *            compiled template of tested user
+	 * @param row
+	 *            tested sample
+	 * @return boolean if passed or not
 	 */
-	private double getFlyingTimesScore(UserTemplate ut, LoggedRow us) {
-		double score = 0;
+	protected boolean checkPatter(CompiledTemplate ct, KeystrokeSample row) {
+		return evaluate(ct, row, true).isPassed();
+	}
 
-		for (int i = 1; i <= om.getGraphs(); i++) {
-			switch (om.getEvaluationAlgorithm()) {
-			case OptionsManager.T_TESTS:
-				score += tTestComparision(getGraphs(us.getFlyingTimes(), i),
-						getGraphs(ut.getAverageFlyingTimes(), i),
-						getGraphs(ut.getFlyingTimesDeviation(), i));
-				break;
-			case OptionsManager.MANHATTAN:
-			case OptionsManager.EUCLIDEAN:
-				score += distanceComparision(
-						getGraphs(us.getFlyingTimes(), i),
-						getGraphs(ut.getAverageFlyingTimes(), i),
-						getGraphs(ut.getFlyingTimesDeviation(), i),
-						ut.getThreshold(ut.getFlyingTimes(), i,
-								om.getEvaluationAlgorithm()),
-						om.getEvaluationAlgorithm());
-				break;
+	/**
+	 * Evaluates biometric sample against compiled biometric template. Cheap
+	 * checks are evaluated first: sample length and error and long press
+	 * rates, which only increase total weight. Channel stages are then scored
+	 * in order of weight and evaluation stops as soon as best achievable or
+	 * worst possible final score decides the outcome. Without cascade all
+	 * stages are scored, so final score can be compared with any sensitivity.
+	 * Sample of different length has final score of negative infinity.
+	 * 
+	 * @param ct
+	 *            compiled template of tested user
+	 * @param row
+	 *            tested sample
+	 * @param cascade
+	 *            true to stop as soon as outcome is decided
+	 * @return result of evaluation
+	 */
+	protected Evaluation evaluate(CompiledTemplate ct, KeystrokeSample row,
+			boolean cascade) {
+		Evaluation ev = new Evaluation(graphs);
+
+		if (row.size() != ct.getPassLength()) {
+			ev.addScore(Double.NEGATIVE_INFINITY);
+			ev.setTotalWeight(1);
+			ev.finish(false, !cascade);
+			return ev;
+		}
+
+		LoggedRow us = new LoggedRow(row);
+
+		int remainingWeight = getStagesWeight();
+		ev.setTotalWeight(evaluateRates(us, ct.getLongPressRate(),
+				ct.getErrorRate()) + remainingWeight);
+
+		double totalWeight = ev.getTotalWeight();
+		double minimum = (metric != null) ? metric.getMinimum()
+				: Double.NEGATIVE_INFINITY;
+
+		for (int stage : stages) {
+			if ((flag & stage) != stage) {
+				continue;
 			}
+
+			double finalScore = ev.getWeightedScore();
+
+			if (!cascade) {
+				ev.addScore(getStageScore(ev, stage, ct, us));
+				continue;
+			}
+
+			/* Every stage scores at most its weight */
+			if ((finalScore + remainingWeight) / totalWeight < sensitivity) {
+				ev.finish(false, false);
+				return ev;
+			}
+
+			if ((finalScore + remainingWeight * minimum) / totalWeight >= sensitivity) {
+				ev.finish(true, false);
+				return ev;
+			}
+
+			ev.addScore(getStageScore(ev, stage, ct, us));
+			remainingWeight -= getStageWeight(stage);
 		}
 
-		score /= om.getGraphs();
-		totalWeight += flyingTimesWeight;
-		return score * flyingTimesWeight;
+		ev.finish((ev.getScore() >= sensitivity) ? true : false, true);
+		return ev;
 	}
 
 	/**
-	 * Evaluates error or long press rate and add weight if not passed.
+	 * Identifies sample against all templates of gallery. Templates with
+	 * different password length are skipped.
 	 * 
-	 * @param sampleRate
-	 *            test values
-	 * @param templateRate
-	 *            template values
-	 * @param weight
-	 *            weight of metric
+	 * @param gallery
+	 *            compiled templates of candidates
+	 * @param row
+	 *            tested sample
+	 * @return results ordered from the best match
 	 */
-	private void evaluateRate(double sampleRate, double templateRate, int weight) {
-		if (sampleRate > Math.ceil(templateRate)
-				|| sampleRate < Math.floor(templateRate)) {
-			totalWeight += weight;
+	protected List<IdentificationResult> identify(TemplateGallery gallery,
+			KeystrokeSample row) {
+		double[] scores = evaluate(gallery, row);
+		int length = row.size();
+
+		List<IdentificationResult> results = new ArrayList<IdentificationResult>();
+		for (int t = 0; t < gallery.size(); t++) {
+			if (gallery.getPassLength(t) == length) {
+				results.add(new IdentificationResult(gallery.getUsername(t),
+						scores[t]));
+			}
 		}
+
+		Collections.sort(results);
+		return results;
 	}
 
-	/*************************************************************************/
+	/**
+	 * Evaluates sample against all templates of gallery without cascade.
+	 * Final scores are the same as scores of evaluate for every compiled
+	 * template, template with different password length has final score of
+	 * negative infinity.
+	 * 
+	 * @param gallery
+	 *            compiled templates of candidates
+	 * @param row
+	 *            tested sample
+	 * @return final scores in order of templates in gallery
+	 */
+	protected double[] evaluate(TemplateGallery gallery, KeystrokeSample row) {
+		double[][] parts = evaluateParts(gallery, row);
+		double[] scores = new double[parts.length];
+
+		for (int t = 0; t < parts.length; t++) {
+			scores[t] = combineParts(parts[t], flag);
+		}
+
+		return scores;
+	}
 
 	/**
-	 * Checks biometric sample against biometric template.
+	 * Evaluates every part of flag separately against all templates of
+	 * gallery. Sample n-graphs are generated once per channel and compared
+	 * with packed vectors of all templates in single pass. Part of channel
+	 * stage holds its weighted score, part of rate holds weight of failed
+	 * rate. Parts which are not in flag are zero.
 	 * 
-	 * @param user
-	 *            tested user template
+	 * @param gallery
+	 *            compiled templates of candidates
 	 * @param row
 	 *            tested sample
-	 * @return boolean if passed or not
+	 * @return parts in order of PARTS for every template, null for template
+	 *         with different password length
 	 */
-	protected boolean checkPatter(UserModel user, List<LoggedKey> row) {
-		UserTemplate ut = new UserTemplate(user, om.getFlag(), true);
+	protected double[][] evaluateParts(TemplateGallery gallery,
+			KeystrokeSample row) {
 		LoggedRow us = new LoggedRow(row);
+		NGraphs testGraphs = new NGraphs(graphs);
 
-		double finalScore = totalWeight = 0;
+		int size = gallery.size();
+		int length = row.size();
 
-		if ((om.getFlag() & OptionsManager.FLYINGTIMES) == OptionsManager.FLYINGTIMES)
-			finalScore += getFlyingTimesScore(ut, us);
-		if ((om.getFlag() & OptionsManager.ACCELERANCE) == OptionsManager.ACCELERANCE)
-			finalScore += getAcceleratorScore(ut, us);
-		if ((om.getFlag() & OptionsManager.ORIENTATION) == OptionsManager.ORIENTATION)
-			finalScore += getOrientationScore(ut, us);
+		double[][] parts = new double[size][];
+		double[] stageScores = new double[size];
 
-		if ((om.getFlag() & OptionsManager.LONGPRESSRATE) == OptionsManager.LONGPRESSRATE)
-			evaluateRate(us.getLongPressCount(), ut.getLongPressRate(),
-					substituteRateWeight);
-		if ((om.getFlag() & OptionsManager.ERRORRATE) == OptionsManager.ERRORRATE)
-			evaluateRate(us.getErrorCount(), ut.getErrorRate(), errorRateWeight);
+		for (int t = 0; t < size; t++) {
+			if (gallery.getPassLength(t) != length) {
+				continue;
+			}
+
+			parts[t] = new double[PARTS.length];
+			if ((flag & OptionsManager.LONGPRESSRATE) == OptionsManager.LONGPRESSRATE) {
+				parts[t][LONGPRESSRATE_PART] = evaluateRate(
+						us.getLongPressCount(), gallery.getLongPressRate(t),
+						substituteRateWeight);
+			}
+			if ((flag & OptionsManager.ERRORRATE) == OptionsManager.ERRORRATE) {
+				parts[t][ERRORRATE_PART] = evaluateRate(us.getErrorCount(),
+						gallery.getErrorRate(t), errorRateWeight);
+			}
+		}
+
+		for (int part = 0; part < STAGE_PARTS; part++) {
+			int stage = PARTS[part];
+			if ((flag & stage) != stage) {
+				continue;
+			}
+
+			int[] channels = getStageChannels(stage);
+			Arrays.fill(stageScores, 0);
 
-		finalScore /= totalWeight;
+			for (int channel : channels) {
+				testGraphs.compute(us.getValues(channel));
+
+				for (int n = 1; n <= graphs; n++) {
+					double[] test = testGraphs.getSeries(n);
+					double[] averages = gallery.getAverages(channel, n);
+					double[] deviations = gallery.getDeviations(channel, n);
+					int graphLength = testGraphs.getLength(n);
+
+					for (int t = 0; t < size; t++) {
+						if (parts[t] == null) {
+							continue;
+						}
+
+						DistanceMetric channelMetric = (metric != null) ? metric
+								: gallery.getMetric(t, channel, n);
+
+						stageScores[t] += channelMetric.compare(test,
+								averages, deviations,
+								gallery.getOffset(t, channel, n), graphLength,
+								channelMetric.usesThreshold() ? gallery
+										.getThreshold(t, channel, n) : 0);
+					}
+				}
+			}
+
+			for (int t = 0; t < size; t++) {
+				if (parts[t] != null) {
+					parts[t][part] = stageScores[t]
+							/ (channels.length * graphs)
+							* getStageWeight(stage);
+				}
+			}
+		}
+
+		return parts;
+	}
+
+	/**
+	 * Combines separately evaluated parts into final score for flag. Flag
+	 * must contain only parts which were evaluated.
+	 * 
+	 * @param parts
+	 *            parts of template from evaluateParts
+	 * @param flag
+	 *            evaluated flag
+	 * @return final score, negative infinity for different password length
+	 */
+	protected double combineParts(double[] parts, int flag) {
+		if (parts == null) {
+			return Double.NEGATIVE_INFINITY;
+		}
+
+		double weightedScore = 0;
+		int totalWeight = 0;
+
+		for (int part = 0; part < PARTS.length; part++) {
+			if ((flag & PARTS[part]) != PARTS[part]) {
+				continue;
+			}
+
+			if (part < STAGE_PARTS) {
+				weightedScore += parts[part];
+				totalWeight += getStageWeight(PARTS[part]);
+			} else {
+				totalWeight += (int) parts[part];
+			}
+		}
 
-		return (finalScore >= om.getSensitivity()) ? true : false;
+		return Evaluation.getFinalScore(weightedScore, totalWeight);
 	}
 }
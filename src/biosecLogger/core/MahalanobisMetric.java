@@ -0,0 +1,348 @@
+package biosecLogger.core;
+
+/**
+ * Mahalanobis distance metric bound to single channel and n-graph of compiled
+ * template. Covariance matrix is computed once from clean template samples,
+ * regularized with small ridge and stored as Cholesky factor. Inverse of
+ * factor is kept too, so single comparison costs one triangular
+ * matrix-vector product in O(m^2) without any scratch buffer and metric can
+ * be shared between threads. Columns with zero variance are skipped, same as
+ * in other distance metrics.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class MahalanobisMetric implements DistanceMetric {
+
+	/** Ridge added to diagonal relative to average variance */
+	private static final double RIDGE = 1e-3;
+
+	private int[] columns;
+	private double[] mean;
+	private double[] factor;
+	private double[] inverse;
+	private double threshold;
+
+	/**
+	 * Creates metric from precomputed values.
+	 *
+	 * @param columns
+	 *            ascending indices of used columns
+	 * @param mean
+	 *            average vector of all columns
+	 * @param factor
+	 *            lower triangular Cholesky factor of covariance matrix of used
+	 *            columns, packed by rows
+	 * @param threshold
+	 *            average distance of template samples
+	 */
+	protected MahalanobisMetric(int[] columns, double[] mean, double[] factor,
+			double threshold) {
+		this.columns = columns;
+		this.mean = mean;
+		this.factor = factor;
+		this.threshold = threshold;
+
+		inverse = invert(factor, columns.length);
+	}
+
+	/**
+	 * Computes average vector and Cholesky factor of covariance matrix from
+	 * rows of values.
+	 *
+	 * @param values
+	 *            n-graph values without outliers
+	 * @param skip
+	 *            index of row which is left out, -1 to use all rows
+	 * @return metric without threshold
+	 */
+	private static MahalanobisMetric build(FeatureMatrix values, int skip) {
+		int cols = values.getCols();
+		int rows = 0;
+		double[] data = values.getData();
+
+		double[] mean = new double[cols];
+		double[] variance = new double[cols];
+
+		for (int r = 0; r < values.getRows(); r++) {
+			if (r == skip) {
+				continue;
+			}
+			for (int c = 0; c < cols; c++) {
+				mean[c] += data[r * cols + c];
+			}
+			rows++;
+		}
+		for (int c = 0; c < cols; c++) {
+			mean[c] /= rows;
+		}
+
+		int m = 0;
+		for (int c = 0; c < cols; c++) {
+			for (int r = 0; r < values.getRows(); r++) {
+				if (r != skip) {
+					double delta = data[r * cols + c] - mean[c];
+					variance[c] += delta * delta;
+				}
+			}
+			if (variance[c] > 0) {
+				m++;
+			}
+		}
+
+		int[] columns = new int[m];
+		for (int c = 0, i = 0; c < cols; c++) {
+			if (variance[c] > 0) {
+				columns[i++] = c;
+			}
+		}
+
+		double[] covariance = new double[m * m];
+		double[] delta = new double[m];
+		for (int r = 0; r < values.getRows(); r++) {
+			if (r == skip) {
+				continue;
+			}
+			for (int i = 0; i < m; i++) {
+				delta[i] = data[r * cols + columns[i]] - mean[columns[i]];
+				for (int j = 0; j <= i; j++) {
+					covariance[i * m + j] += delta[i] * delta[j];
+				}
+			}
+		}
+
+		double trace = 0;
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j <= i; j++) {
+				covariance[i * m + j] /= rows;
+			}
+			trace += covariance[i * m + i];
+		}
+
+		double ridge = (m == 0) ? 0 : RIDGE * trace / m;
+		for (int i = 0; i < m; i++) {
+			covariance[i * m + i] += ridge;
+		}
+
+		return new MahalanobisMetric(columns, mean, cholesky(covariance, m,
+				ridge), 0);
+	}
+
+	/**
+	 * Computes metric from clean n-graph values. Threshold is average
+	 * distance of every sample from model built without that sample, same as
+	 * leave-one-out thresholds of other distance metrics.
+	 *
+	 * @param values
+	 *            n-graph values without outliers
+	 * @return compiled metric
+	 */
+	private static MahalanobisMetric compile(FeatureMatrix values) {
+		int rows = values.getRows();
+		int cols = values.getCols();
+		double[] data = values.getData();
+
+		MahalanobisMetric metric = build(values, -1);
+
+		double threshold = 0;
+		if (rows > 1) {
+			for (int r = 0; r < rows; r++) {
+				threshold += build(values, r).distance(data, r * cols, cols);
+			}
+			threshold /= rows;
+		}
+		metric.threshold = threshold;
+
+		return metric;
+	}
+
+	/**
+	 * Computes Cholesky factorization of symmetric positive definite matrix.
+	 * Only lower triangle of matrix is read.
+	 *
+	 * @param matrix
+	 *            square matrix stored by rows
+	 * @param m
+	 *            size of matrix
+	 * @param minPivot
+	 *            pivot used when rounding errors make matrix indefinite
+	 * @return lower triangular factor packed by rows
+	 */
+	private static double[] cholesky(double[] matrix, int m, double minPivot) {
+		double[] lower = new double[m * (m + 1) / 2];
+
+		for (int i = 0; i < m; i++) {
+			int rowI = i * (i + 1) / 2;
+			for (int j = 0; j <= i; j++) {
+				int rowJ = j * (j + 1) / 2;
+				double sum = matrix[i * m + j];
+				for (int k = 0; k < j; k++) {
+					sum -= lower[rowI + k] * lower[rowJ + k];
+				}
+
+				if (i == j) {
+					lower[rowI + i] = Math.sqrt((sum > 0) ? sum : minPivot);
+				} else {
+					lower[rowI + j] = sum / lower[rowJ + j];
+				}
+			}
+		}
+
+		return lower;
+	}
+
+	/**
+	 * Inverts lower triangular matrix. Inverse is lower triangular too and
+	 * its leading blocks are inverses of leading blocks of matrix.
+	 *
+	 * @param lower
+	 *            lower triangular matrix packed by rows
+	 * @param m
+	 *            size of matrix
+	 * @return lower triangular inverse packed by rows
+	 */
+	private static double[] invert(double[] lower, int m) {
+		double[] inverse = new double[lower.length];
+
+		for (int j = 0; j < m; j++) {
+			int rowJ = j * (j + 1) / 2;
+			inverse[rowJ + j] = 1 / lower[rowJ + j];
+
+			for (int i = j + 1; i < m; i++) {
+				int rowI = i * (i + 1) / 2;
+				double sum = 0;
+				for (int k = j; k < i; k++) {
+					sum += lower[rowI + k] * inverse[k * (k + 1) / 2 + j];
+				}
+				inverse[rowI + j] = -sum / lower[rowI + i];
+			}
+		}
+
+		return inverse;
+	}
+
+	/**
+	 * Computes Mahalanobis distances of channel for n-graphs from 1 up to
+	 * graphs. Values are corrected with Grubb's test and rows with outliers
+	 * are removed before covariance is computed.
+	 *
+	 * @param values
+	 *            extracted values of channel
+	 * @param statistics
+	 *            running statistics of user's samples
+	 * @param channel
+	 *            channel constant
+	 * @param graphs
+	 *            maximal number of n-graphs
+	 * @return metrics indexed by n - 1
+	 */
+	protected static MahalanobisMetric[] compile(FeatureMatrix values,
+			SampleStatistics statistics, int channel, int graphs) {
+		MahalanobisMetric[] metrics = new MahalanobisMetric[graphs];
+		FeatureMatrix[] nGraphs = LeaveOneOut.convertToNGraphs(values, graphs);
+
+		for (int n = 0; n < graphs; n++) {
+			if (nGraphs[n] == null) {
+				metrics[n] = new MahalanobisMetric(new int[0], new double[0],
+						new double[0], 0);
+				continue;
+			}
+
+			double[][] result = statistics.getAverageWithDeviation(channel,
+					n + 1, nGraphs[n].getCols());
+			FeatureMatrix clean = GrubbsTest.grubbsOutlierCorrection(
+					nGraphs[n], result[0], result[1]).removeOutlierRows();
+
+			metrics[n] = compile((clean.getRows() > 0) ? clean : nGraphs[n]);
+		}
+
+		return metrics;
+	}
+
+	/**
+	 * Computes Mahalanobis distance of vector from template average. Only
+	 * columns lower than length are used, which corresponds to leading block
+	 * of inverse Cholesky factor. Every element of whitened vector is computed
+	 * directly from its row of inverse, so no buffer is needed.
+	 *
+	 * @param values
+	 *            source array
+	 * @param offset
+	 *            index of first value of vector
+	 * @param length
+	 *            length of vector
+	 * @return Mahalanobis distance
+	 */
+	private double distance(double[] values, int offset, int length) {
+		double score = 0;
+
+		for (int i = 0; i < columns.length && columns[i] < length; i++) {
+			int row = i * (i + 1) / 2;
+			double z = 0;
+			for (int k = 0; k <= i; k++) {
+				z += inverse[row + k]
+						* (values[offset + columns[k]] - mean[columns[k]]);
+			}
+			score += z * z;
+		}
+
+		return Math.sqrt(score);
+	}
+
+	/**
+	 * Compares test vector with average vector of template. Average vector,
+	 * deviations and threshold of metric are used instead of arguments.
+	 */
+	@Override
+	public double compare(double[] testValues, double[] averageValues,
+			double[] deviations, int offset, int length, double threshold) {
+		return ThresholdMetric.similarity(distance(testValues, 0, length),
+				this.threshold);
+	}
+
+	@Override
+	public double getMinimum() {
+		return Double.NEGATIVE_INFINITY;
+	}
+
+	@Override
+	public boolean usesThreshold() {
+		return false;
+	}
+
+	/**
+	 * Returns indices of used columns.
+	 *
+	 * @return indices of columns
+	 */
+	protected int[] getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Returns average vector.
+	 *
+	 * @return average vector
+	 */
+	protected double[] getMean() {
+		return mean;
+	}
+
+	/**
+	 * Returns packed Cholesky factor of covariance matrix.
+	 *
+	 * @return Cholesky factor
+	 */
+	protected double[] getFactor() {
+		return factor;
+	}
+
+	/**
+	 * Returns average distance of template samples.
+	 *
+	 * @return threshold
+	 */
+	protected double getThreshold() {
+		return threshold;
+	}
+}
@@ -0,0 +1,40 @@
+package biosecLogger.core;
+
+/**
+ * Manhattan distance metric. Values with zero deviation are skipped. Loop is
+ * unrolled with four independent accumulators.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class ManhattanMetric extends ThresholdMetric {
+
+	@Override
+	public double compare(double[] testValues, double[] averageValues,
+			double[] deviations, int offset, int length, double threshold) {
+		double s0 = 0;
+		double s1 = 0;
+		double s2 = 0;
+		double s3 = 0;
+
+		int i = 0;
+		int k = offset;
+		for (; i + 3 < length; i += 4, k += 4) {
+			s0 += (deviations[k] == 0) ? 0 : Math.abs(testValues[i]
+					- averageValues[k]);
+			s1 += (deviations[k + 1] == 0) ? 0 : Math.abs(testValues[i + 1]
+					- averageValues[k + 1]);
+			s2 += (deviations[k + 2] == 0) ? 0 : Math.abs(testValues[i + 2]
+					- averageValues[k + 2]);
+			s3 += (deviations[k + 3] == 0) ? 0 : Math.abs(testValues[i + 3]
+					- averageValues[k + 3]);
+		}
+
+		for (; i < length; i++, k++) {
+			s0 += (deviations[k] == 0) ? 0 : Math.abs(testValues[i]
+					- averageValues[k]);
+		}
+
+		return similarity((s0 + s1) + (s2 + s3), threshold);
+	}
+}
@@ -0,0 +1,122 @@
+package biosecLogger.core;
+
+/**
+ * NGraphs generates n-graph series for every n from 1 up to graphs in single
+ * pass. Prefix sums of row are computed once and each n-graph value is then
+ * difference of two prefix sums. Buffers are preallocated and reused between
+ * rows, so instance is not thread safe.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class NGraphs {
+
+	private int graphs;
+	private int length;
+
+	private double[] prefix;
+	private double[][] series;
+
+	/**
+	 * Creates generator for n-graphs from 1 up to graphs.
+	 *
+	 * @param graphs
+	 *            maximal number of n-graphs
+	 */
+	protected NGraphs(int graphs) {
+		this.graphs = (graphs < 1) ? 1 : graphs;
+		prefix = new double[1];
+		series = new double[this.graphs][0];
+	}
+
+	/**
+	 * Grows buffers to hold row of specific length.
+	 *
+	 * @param length
+	 *            length of row
+	 */
+	private void ensureCapacity(int length) {
+		if (prefix.length > length) {
+			return;
+		}
+
+		prefix = new double[length + 1];
+		for (int n = 0; n < graphs; n++) {
+			series[n] = new double[length];
+		}
+	}
+
+	/**
+	 * Computes n-graph series of whole row.
+	 *
+	 * @param values
+	 *            raw values
+	 * @return this generator
+	 */
+	protected NGraphs compute(double[] values) {
+		return compute(values, 0, values.length);
+	}
+
+	/**
+	 * Computes n-graph series of part of array.
+	 *
+	 * @param values
+	 *            raw values
+	 * @param offset
+	 *            index of first value
+	 * @param length
+	 *            number of values
+	 * @return this generator
+	 */
+	protected NGraphs compute(double[] values, int offset, int length) {
+		ensureCapacity(length);
+		this.length = length;
+
+		prefix[0] = 0;
+		for (int i = 0; i < length; i++) {
+			prefix[i + 1] = prefix[i] + values[offset + i];
+		}
+
+		for (int n = 1; n <= graphs && n <= length; n++) {
+			double[] graph = series[n - 1];
+			int size = length + 1 - n;
+			for (int i = 0; i < size; i++) {
+				graph[i] = prefix[i + n] - prefix[i];
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Returns maximal number of n-graphs.
+	 *
+	 * @return number of n-graphs
+	 */
+	protected int getGraphs() {
+		return graphs;
+	}
+
+	/**
+	 * Returns buffer with n-graph series of last computed row. Buffer can be
+	 * longer than series and is overwritten by next computation.
+	 *
+	 * @param n
+	 *            number of graphs
+	 * @return n-graph series
+	 */
+	protected double[] getSeries(int n) {
+		return series[n - 1];
+	}
+
+	/**
+	 * Returns length of n-graph series of last computed row.
+	 *
+	 * @param n
+	 *            number of graphs
+	 * @return length of series
+	 */
+	protected int getLength(int n) {
+		return Math.max(length + 1 - n, 0);
+	}
+}
@@ -11,13 +11,13 @@ import biosecLogger.exceptions.HoldCounterException;
 
 public class OptionsManager {
 
-	private static final int EVAL_ALGORITHMS = 3;
+	private static final int EVAL_ALGORITHMS = 4;
 
 	/** Evaluation algorithms */
 	public static final int T_TESTS = 0;
 	public static final int MANHATTAN = 1;
 	public static final int EUCLIDEAN = 2;
-	// public static final int MAHALANOBIS = 3;
+	public static final int MAHALANOBIS = 3;
 
 	/** Flags */
 	public static final int FLYINGTIMES = 1;
@@ -60,6 +60,35 @@ public class OptionsManager {
 		}
 	}
 
+	/**
+	 * Initialize instance of OptionsManager with default settings. Settings
+	 * file is not read.
+	 */
+	protected OptionsManager() {
+		sensitivity = new double[EVAL_ALGORITHMS];
+		loadSettingsFromDefaults();
+	}
+
+	/**
+	 * Initialize instance of OptionsManager as copy of another settings with
+	 * different flag. Settings file is not read.
+	 * 
+	 * @param oManager
+	 *            copied settings
+	 * @param flag
+	 *            flag of copy
+	 */
+	protected OptionsManager(OptionsManager oManager, int flag) {
+		sensitivity = oManager.sensitivity.clone();
+		evaluationAlgorithm = oManager.evaluationAlgorithm;
+		templateCreateCount = oManager.templateCreateCount;
+		templateHoldCount = oManager.templateHoldCount;
+		externalSaving = oManager.externalSaving;
+		graphs = oManager.graphs;
+		pThreshold = oManager.pThreshold;
+		setFlag(flag);
+	}
+
 	/**
 	 * Loads default hard-coded settings when file is not found.
 	 */
@@ -76,6 +105,7 @@ public class OptionsManager {
 		sensitivity[T_TESTS] = 0.8;
 		sensitivity[MANHATTAN] = 0.8;
 		sensitivity[EUCLIDEAN] = 0.7;
+		sensitivity[MAHALANOBIS] = 0.7;
 	}
 
 	/**
@@ -97,11 +127,13 @@ public class OptionsManager {
 		templateHoldCount = json.getInt("templateHoldCount");
 		externalSaving = json.getBoolean("externalSaving");
 		flag = json.getInt("flag");
-		graphs = json.getInt("graphs");
+		setGraphs(json.getInt("graphs"));
 		pThreshold = json.getDouble("pThreshold");
 		sensitivity[T_TESTS] = json.getDouble("tTestsSensitivity");
 		sensitivity[MANHATTAN] = json.getDouble("manhattanSensitivity");
 		sensitivity[EUCLIDEAN] = json.getDouble("euclideanSensitivity");
+		sensitivity[MAHALANOBIS] = json.optDouble("mahalanobisSensitivity",
+				0.7);
 	}
 
 	/**
@@ -124,6 +156,7 @@ public class OptionsManager {
 			json.put("tTestsSensitivity", sensitivity[T_TESTS]);
 			json.put("manhattanSensitivity", sensitivity[MANHATTAN]);
 			json.put("euclideanSensitivity", sensitivity[EUCLIDEAN]);
+			json.put("mahalanobisSensitivity", sensitivity[MAHALANOBIS]);
 		} catch (JSONException e) {
 			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
 			return false;
@@ -223,7 +256,7 @@ public class OptionsManager {
 	 */
 	public void setEvaluationAlgorithm(int algorithm) {
 		evaluationAlgorithm = (algorithm < 0) ? 0
-				: (algorithm > EUCLIDEAN) ? EUCLIDEAN : algorithm;
+				: (algorithm > MAHALANOBIS) ? MAHALANOBIS : algorithm;
 	}
 
 	/**
@@ -277,13 +310,13 @@ public class OptionsManager {
 	}
 
 	/**
-	 * Sets number of n-graphs.
+	 * Sets number of n-graphs. At least one n-graph is set.
 	 * 
 	 * @param value
 	 *            number of n-graphs
 	 */
 	public void setGraphs(int value) {
-		graphs = (value < 0) ? 0 : value;
+		graphs = (value < 1) ? 1 : value;
 	}
 
 	/**
@@ -0,0 +1,237 @@
+package biosecLogger.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * SampleCodec writes and reads biometric samples in compact binary form.
+ * Flying times are delta encoded variable length integers in microseconds,
+ * samples with flying times in milliseconds are still readable. Error and long
+ * press flags are packed to bits and sensor values are stored as 32-bit
+ * floats. Values are written column by column, same as they are stored in
+ * KeystrokeSample.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class SampleCodec {
+
+	/** Resolution of flying times in units per millisecond */
+	protected static final int MICROS = 1000;
+
+	/** Resolution of flying times of old samples in units per millisecond */
+	protected static final int MILLIS = 1;
+
+	/** Sensor channels stored as floats in this order */
+	private static final int[] FLOAT_CHANNELS = { KeystrokeSample.ORIENTATION_X,
+			KeystrokeSample.ORIENTATION_Y, KeystrokeSample.ORIENTATION_Z,
+			KeystrokeSample.ACCELERANCE_X, KeystrokeSample.ACCELERANCE_Y,
+			KeystrokeSample.ACCELERANCE_Z };
+
+	/**
+	 * Writes unsigned variable length integer. Every byte holds 7 bits of
+	 * value and highest bit marks that another byte follows.
+	 *
+	 * @param out
+	 *            output
+	 * @param value
+	 *            non negative value
+	 * @throws IOException
+	 *             raises when value could not be written
+	 */
+	protected static void writeVarLong(DataOutput out, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads unsigned variable length integer.
+	 *
+	 * @param in
+	 *            input
+	 * @return value
+	 * @throws IOException
+	 *             raises when value could not be read or is too long
+	 */
+	protected static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/**
+	 * Writes signed variable length integer. Value is zigzag encoded, so
+	 * small negative values are short as well.
+	 *
+	 * @param out
+	 *            output
+	 * @param value
+	 *            value
+	 * @throws IOException
+	 *             raises when value could not be written
+	 */
+	protected static void writeSignedVarLong(DataOutput out, long value)
+			throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Reads signed variable length integer.
+	 *
+	 * @param in
+	 *            input
+	 * @return value
+	 * @throws IOException
+	 *             raises when value could not be read
+	 */
+	protected static long readSignedVarLong(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads variable length integer which must fit to non negative int.
+	 *
+	 * @param in
+	 *            input
+	 * @return value
+	 * @throws IOException
+	 *             raises when value could not be read or is out of range
+	 */
+	protected static int readVarInt(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("Value out of range: " + value);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Writes biometric sample. Flying times are written in microseconds.
+	 *
+	 * @param out
+	 *            output
+	 * @param sample
+	 *            written sample
+	 * @throws IOException
+	 *             raises when sample could not be written
+	 */
+	protected static void writeSample(DataOutput out, KeystrokeSample sample)
+			throws IOException {
+		int size = sample.size();
+		writeVarLong(out, size);
+
+		long last = 0;
+		for (int i = 0; i < size; i++) {
+			long flyingTime = Math.round(sample.getFlyingTime(i) * MICROS);
+			writeSignedVarLong(out, flyingTime - last);
+			last = flyingTime;
+		}
+
+		for (int i = 0; i < size; i += 8) {
+			int errors = 0;
+			int longPresses = 0;
+			for (int j = 0; j < 8 && i + j < size; j++) {
+				errors |= (sample.getError(i + j) ? 1 : 0) << j;
+				longPresses |= (sample.getLongPress(i + j) ? 1 : 0) << j;
+			}
+			out.writeByte(errors);
+			out.writeByte(longPresses);
+		}
+
+		for (int i = 0; i < size; i++) {
+			writeSignedVarLong(out, sample.getOrientation(i));
+		}
+
+		for (int i = 0; i < size; i++) {
+			out.writeFloat((float) sample.getPressure(i));
+		}
+
+		for (int channel : FLOAT_CHANNELS) {
+			for (int i = 0; i < size; i++) {
+				out.writeFloat((float) sample.getValue(channel, i));
+			}
+		}
+	}
+
+	/**
+	 * Reads biometric sample.
+	 *
+	 * @param in
+	 *            input
+	 * @param resolution
+	 *            resolution of flying times, MICROS or MILLIS
+	 * @return read sample
+	 * @throws IOException
+	 *             raises when sample could not be read
+	 */
+	protected static KeystrokeSample readSample(DataInput in, int resolution)
+			throws IOException {
+		int size = readVarInt(in);
+
+		double[] flyingTimes = new double[size];
+		boolean[] errors = new boolean[size];
+		boolean[] longPresses = new boolean[size];
+		int[] orientations = new int[size];
+		double[] pressures = new double[size];
+		double[][] values = new double[KeystrokeSample.CHANNELS][size];
+
+		long last = 0;
+		for (int i = 0; i < size; i++) {
+			last += readSignedVarLong(in);
+			flyingTimes[i] = (double) last / resolution;
+		}
+
+		for (int i = 0; i < size; i += 8) {
+			int errorBits = in.readUnsignedByte();
+			int longPressBits = in.readUnsignedByte();
+			for (int j = 0; j < 8 && i + j < size; j++) {
+				errors[i + j] = (errorBits & (1 << j)) != 0;
+				longPresses[i + j] = (longPressBits & (1 << j)) != 0;
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			orientations[i] = (int) readSignedVarLong(in);
+		}
+
+		for (int i = 0; i < size; i++) {
+			pressures[i] = in.readFloat();
+		}
+
+		for (int channel : FLOAT_CHANNELS) {
+			for (int i = 0; i < size; i++) {
+				values[channel][i] = in.readFloat();
+			}
+		}
+
+		KeystrokeSample sample = new KeystrokeSample(size);
+		for (int i = 0; i < size; i++) {
+			sample.addKey(flyingTimes[i], longPresses[i], errors[i],
+					orientations[i], pressures[i],
+					values[KeystrokeSample.ORIENTATION_X][i],
+					values[KeystrokeSample.ORIENTATION_Y][i],
+					values[KeystrokeSample.ORIENTATION_Z][i],
+					values[KeystrokeSample.ACCELERANCE_X][i],
+					values[KeystrokeSample.ACCELERANCE_Y][i],
+					values[KeystrokeSample.ACCELERANCE_Z][i]);
+		}
+
+		/* Sample is shared by evaluations, it is trimmed before */
+		sample.trim();
+		return sample;
+	}
+}
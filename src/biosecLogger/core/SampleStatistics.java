@@ -0,0 +1,181 @@
+package biosecLogger.core;
+
+/**
+ * SampleStatistics holds running averages and variances of every channel
+ * column for n-graphs up to specific size. Statistics are updated with
+ * Welford's method when sample is added and downdated when sample is evicted,
+ * so single update costs O(passLength) regardless of samples count. Only
+ * uncorrected statistics are kept, values corrected with Grubb's test and
+ * leave-one-out thresholds are computed from all samples.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class SampleStatistics {
+
+	private int graphs;
+
+	private int[][][] counts;
+	private double[][][] means;
+	private double[][][] m2s;
+
+	private NGraphs nGraphs;
+
+	/**
+	 * Creates empty statistics for n-graphs from 1 up to graphs.
+	 *
+	 * @param graphs
+	 *            maximal number of n-graphs
+	 */
+	protected SampleStatistics(int graphs) {
+		this.graphs = (graphs < 1) ? 1 : graphs;
+
+		counts = new int[KeystrokeSample.CHANNELS][this.graphs][0];
+		means = new double[KeystrokeSample.CHANNELS][this.graphs][0];
+		m2s = new double[KeystrokeSample.CHANNELS][this.graphs][0];
+
+		nGraphs = new NGraphs(this.graphs);
+	}
+
+	/**
+	 * Grows accumulators of channel and n-graph to required length.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @param n
+	 *            index of n-graph (n - 1)
+	 * @param length
+	 *            required length
+	 */
+	private void ensureLength(int channel, int n, int length) {
+		if (counts[channel][n].length >= length) {
+			return;
+		}
+
+		int[] newCounts = new int[length];
+		double[] newMeans = new double[length];
+		double[] newM2s = new double[length];
+
+		System.arraycopy(counts[channel][n], 0, newCounts, 0,
+				counts[channel][n].length);
+		System.arraycopy(means[channel][n], 0, newMeans, 0,
+				means[channel][n].length);
+		System.arraycopy(m2s[channel][n], 0, newM2s, 0, m2s[channel][n].length);
+
+		counts[channel][n] = newCounts;
+		means[channel][n] = newMeans;
+		m2s[channel][n] = newM2s;
+	}
+
+	/**
+	 * Updates or downdates accumulators with single sample.
+	 *
+	 * @param row
+	 *            biometric sample
+	 * @param remove
+	 *            if true, sample is removed from statistics
+	 */
+	private void update(KeystrokeSample row, boolean remove) {
+		for (int channel = 0; channel < KeystrokeSample.CHANNELS; channel++) {
+			nGraphs.compute(row.getChannel(channel));
+
+			for (int n = 0; n < graphs; n++) {
+				int length = nGraphs.getLength(n + 1);
+				if (length <= 0) {
+					break;
+				}
+
+				if (!remove) {
+					ensureLength(channel, n, length);
+				}
+
+				int[] count = counts[channel][n];
+				double[] mean = means[channel][n];
+				double[] m2 = m2s[channel][n];
+				double[] graph = nGraphs.getSeries(n + 1);
+
+				for (int col = 0; col < length; col++) {
+					double value = graph[col];
+
+					if (remove) {
+						if (count[col] <= 1) {
+							count[col] = 0;
+							mean[col] = 0;
+							m2[col] = 0;
+						} else {
+							double oldMean = (count[col] * mean[col] - value)
+									/ (count[col] - 1);
+							m2[col] -= (value - mean[col]) * (value - oldMean);
+							m2[col] = (m2[col] < 0) ? 0 : m2[col];
+							mean[col] = oldMean;
+							count[col]--;
+						}
+					} else {
+						count[col]++;
+						double delta = value - mean[col];
+						mean[col] += delta / count[col];
+						m2[col] += delta * (value - mean[col]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds sample to statistics.
+	 *
+	 * @param row
+	 *            biometric sample
+	 */
+	protected void add(KeystrokeSample row) {
+		update(row, false);
+	}
+
+	/**
+	 * Removes sample from statistics. Sample must be added before.
+	 *
+	 * @param row
+	 *            biometric sample
+	 */
+	protected void remove(KeystrokeSample row) {
+		update(row, true);
+	}
+
+	/**
+	 * Returns maximal number of n-graphs held in statistics.
+	 *
+	 * @return number of n-graphs
+	 */
+	protected int getGraphs() {
+		return graphs;
+	}
+
+	/**
+	 * Returns average vector with standard deviation vector of channel for
+	 * specific n-graph.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @param graphs
+	 *            number of n-graphs
+	 * @param length
+	 *            length of vectors
+	 * @return array with average vector and standard deviation vector
+	 */
+	protected double[][] getAverageWithDeviation(int channel, int graphs,
+			int length) {
+		double[] average = new double[length];
+		double[] deviation = new double[length];
+
+		int[] count = counts[channel][graphs - 1];
+		double[] mean = means[channel][graphs - 1];
+		double[] m2 = m2s[channel][graphs - 1];
+
+		for (int i = 0; i < length; i++) {
+			average[i] = mean[i];
+			deviation[i] = Math.sqrt(m2[i] / count[i]);
+		}
+
+		return new double[][] { average, deviation };
+	}
+}
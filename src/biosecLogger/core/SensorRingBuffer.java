@@ -0,0 +1,202 @@
+package biosecLogger.core;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * SensorRingBuffer keeps last timestamped readings of sensor in fixed size
+ * primitive arrays. Readings are not allocated, the oldest reading is
+ * overwritten when buffer is full. Sensor state at any time is linearly
+ * interpolated between two nearest readings, so value of key does not depend
+ * on when the last sensor callback arrived.
+ *
+ * Buffer has single writer thread and any number of reader threads. Readers
+ * do not lock, they use sequence lock: writer makes sequence odd during write
+ * and readers repeat reading until they see the same even sequence before and
+ * after reading. All shared values are read as volatile, so reading can not
+ * be reordered behind check of sequence.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class SensorRingBuffer {
+
+	private int capacity;
+	private int channels;
+
+	private AtomicLongArray times;
+	private AtomicIntegerArray values;
+
+	private volatile int head;
+	private volatile int size;
+	private volatile int sequence;
+
+	/**
+	 * Creates empty buffer.
+	 *
+	 * @param capacity
+	 *            maximal number of readings
+	 * @param channels
+	 *            number of values in single reading
+	 */
+	protected SensorRingBuffer(int capacity, int channels) {
+		this.capacity = capacity;
+		this.channels = channels;
+
+		times = new AtomicLongArray(capacity);
+		values = new AtomicIntegerArray(capacity * channels);
+	}
+
+	/**
+	 * Adds reading. Readings must be added in order of their timestamps and
+	 * only from writer thread.
+	 *
+	 * @param time
+	 *            timestamp of reading in nanoseconds
+	 * @param reading
+	 *            values of reading, one per channel
+	 */
+	protected void add(long time, float[] reading) {
+		int h = head;
+
+		sequence++;
+		times.set(h, time);
+		for (int c = 0; c < channels; c++) {
+			values.set(h * channels + c, Float.floatToRawIntBits(reading[c]));
+		}
+
+		head = (h + 1) % capacity;
+		if (size < capacity) {
+			size++;
+		}
+		sequence++;
+	}
+
+	/**
+	 * Removes all readings. Method must be called only from writer thread.
+	 */
+	protected void clear() {
+		sequence++;
+		head = 0;
+		size = 0;
+		sequence++;
+	}
+
+	/**
+	 * Returns number of readings.
+	 *
+	 * @return number of readings
+	 */
+	protected int size() {
+		return size;
+	}
+
+	/**
+	 * Returns index of reading in arrays.
+	 *
+	 * @param h
+	 *            head read by reader
+	 * @param age
+	 *            0 for newest reading, size - 1 for oldest reading
+	 * @return index of reading
+	 */
+	private int index(int h, int age) {
+		return (h - 1 - age + capacity) % capacity;
+	}
+
+	/**
+	 * Returns value of reading.
+	 *
+	 * @param index
+	 *            index of reading
+	 * @param channel
+	 *            channel of value
+	 * @return value
+	 */
+	private float value(int index, int channel) {
+		return Float.intBitsToFloat(values.get(index * channels + channel));
+	}
+
+	/**
+	 * Waits until writer finishes write.
+	 *
+	 * @return even sequence
+	 */
+	private int beginRead() {
+		int s;
+		while (((s = sequence) & 1) != 0) {
+			Thread.yield();
+		}
+		return s;
+	}
+
+	/**
+	 * Interpolates sensor state at time. State before the oldest or after the
+	 * newest reading is not extrapolated, the nearest reading is used.
+	 * Readings are searched from the newest one, because state is usually
+	 * requested for the recent time.
+	 *
+	 * @param time
+	 *            timestamp in nanoseconds
+	 * @param out
+	 *            array to fill with interpolated values, one per channel
+	 * @return true if buffer has any reading, else false
+	 */
+	protected boolean interpolate(long time, float[] out) {
+		int s;
+		boolean found;
+
+		do {
+			s = beginRead();
+			found = interpolate(time, out, head, size);
+		} while (sequence != s);
+
+		return found;
+	}
+
+	/**
+	 * Interpolates sensor state from readings visible by reader. Values may
+	 * be inconsistent when writer wrote meanwhile, caller repeats reading.
+	 *
+	 * @param time
+	 *            timestamp in nanoseconds
+	 * @param out
+	 *            array to fill with interpolated values, one per channel
+	 * @param h
+	 *            head read by reader
+	 * @param n
+	 *            size read by reader
+	 * @return true if buffer has any reading, else false
+	 */
+	private boolean interpolate(long time, float[] out, int h, int n) {
+		if (n == 0) {
+			return false;
+		}
+
+		int age = 0;
+		while (age < n && times.get(index(h, age)) > time) {
+			age++;
+		}
+
+		if (age == 0 || age == n) {
+			/* After the newest or before the oldest reading */
+			int i = index(h, (age == 0) ? 0 : n - 1);
+			for (int c = 0; c < channels; c++) {
+				out[c] = value(i, c);
+			}
+			return true;
+		}
+
+		int before = index(h, age);
+		int after = index(h, age - 1);
+		long t0 = times.get(before);
+		float ratio = (float) (time - t0) / (times.get(after) - t0);
+
+		for (int c = 0; c < channels; c++) {
+			float v0 = value(before, c);
+			float v1 = value(after, c);
+			out[c] = v0 + ratio * (v1 - v0);
+		}
+		return true;
+	}
+}
@@ -1,14 +1,13 @@
 package biosecLogger.core;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.util.Log;
 
 /**
  * Controller to work with service. ServiceHandler starts, stops and listen to
  * service used to log pressure. Service handler works on Android API < 14.
+ * Service runs in the same process, so it publishes pressure directly to
+ * handler instead of broadcasting intent on every touch.
  * 
  * @author Stefan Smihla
  * 
@@ -17,11 +16,10 @@ public enum ServiceHandler {
 	INSTANCE;
 
 	private Context ctx;
-	private PressureReceiver pressureReceiver;
-	private IntentFilter intentFilter;
 	private Intent intent;
 
-	private float pressure;
+	/** Written by service, read by logger */
+	private volatile float pressure;
 
 	/**
 	 * Returns initialized instance of ServiceHandler.
@@ -44,9 +42,6 @@ public enum ServiceHandler {
 	private void initInstance(Context ctx) {
 		this.ctx = ctx;
 
-		pressureReceiver = new PressureReceiver();
-		intentFilter = new IntentFilter();
-		intentFilter.addAction(LoggerService.SCREEN_TOUCHED);
 		intent = new Intent(ctx, LoggerService.class);
 
 		pressure = 0;
@@ -61,11 +56,20 @@ public enum ServiceHandler {
 		return pressure;
 	}
 
+	/**
+	 * Publishes pressure of last touch. Called by service.
+	 * 
+	 * @param pressure
+	 *            pressure of touch
+	 */
+	protected void publishPressure(float pressure) {
+		this.pressure = pressure;
+	}
+
 	/**
 	 * Starts service.
 	 */
 	protected void runService() {
-		ctx.registerReceiver(pressureReceiver, intentFilter);
 		ctx.startService(intent);
 	}
 
@@ -73,23 +77,6 @@ public enum ServiceHandler {
 	 * Stops service.
 	 */
 	protected void stopService() {
-		try {
-			ctx.unregisterReceiver(pressureReceiver);
-		} catch (IllegalArgumentException e) {
-			Log.w(UserLoggerManager.LOGNAME, e.getMessage(), e);
-		}
-
 		ctx.stopService(intent);
 	}
-
-	/**
-	 * Receives pressure from service.
-	 */
-	private class PressureReceiver extends BroadcastReceiver {
-
-		@Override
-		public void onReceive(Context arg0, Intent arg1) {
-			pressure = arg1.getFloatExtra("pressure", 0);
-		}
-	}
 }
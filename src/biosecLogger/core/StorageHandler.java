@@ -1,12 +1,16 @@
 package biosecLogger.core;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 
 import org.apache.commons.codec.binary.Base64;
 
@@ -87,6 +91,151 @@ public class StorageHandler {
 		return true;
 	}
 
+	/**
+	 * Save binary file to storage.
+	 * 
+	 * @param filename
+	 *            new file name
+	 * @param content
+	 *            content of file
+	 * @param ctx
+	 *            if activity context is set, file is saved to internal storage,
+	 *            otherwise to external storage
+	 * @return true if file is saved
+	 * @throws IOException
+	 *             raises when file could not be saved
+	 */
+	protected static boolean saveBytes(String filename, byte[] content,
+			Context ctx) throws IOException {
+		FileOutputStream out = null;
+
+		try {
+			if (ctx != null) {
+				out = ctx.openFileOutput(filename, Context.MODE_PRIVATE);
+			} else {
+				String root = Environment.getExternalStorageDirectory().toString();
+				File dir = new File(root + EXTERNAL_DIRECTORY);
+				dir.mkdirs();
+				out = new FileOutputStream(new File(dir, filename));
+			}
+
+			out.write(content);
+			out.getFD().sync();
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Appends binary content to file in internal storage. Content is synced
+	 * to storage before method returns.
+	 * 
+	 * @param filename
+	 *            file name
+	 * @param content
+	 *            appended content
+	 * @param ctx
+	 *            activity context
+	 * @throws IOException
+	 *             raises when content could not be written
+	 */
+	protected static void appendBytes(String filename, byte[] content,
+			Context ctx) throws IOException {
+		FileOutputStream out = null;
+
+		try {
+			out = ctx.openFileOutput(filename, Context.MODE_PRIVATE
+					| Context.MODE_APPEND);
+			out.write(content);
+			out.getFD().sync();
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Truncates file in internal storage.
+	 * 
+	 * @param filename
+	 *            file name
+	 * @param length
+	 *            new length of file
+	 * @param ctx
+	 *            activity context
+	 * @throws IOException
+	 *             raises when file could not be truncated
+	 */
+	protected static void truncateFile(String filename, long length,
+			Context ctx) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(
+				ctx.getFileStreamPath(filename), "rw");
+		try {
+			file.setLength(length);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Checks if file exists in internal storage.
+	 * 
+	 * @param filename
+	 *            file name
+	 * @param ctx
+	 *            activity context
+	 * @return true if file exists
+	 */
+	protected static boolean fileExists(String filename, Context ctx) {
+		return ctx.getFileStreamPath(filename).exists();
+	}
+
+	/**
+	 * Returns length of file in internal storage.
+	 * 
+	 * @param filename
+	 *            file name
+	 * @param ctx
+	 *            activity context
+	 * @return length of file, 0 if file does not exist
+	 */
+	protected static long fileLength(String filename, Context ctx) {
+		return ctx.getFileStreamPath(filename).length();
+	}
+
+	/**
+	 * Renames file in internal storage. Existing target file is replaced.
+	 * 
+	 * @param from
+	 *            actual file name
+	 * @param to
+	 *            new file name
+	 * @param ctx
+	 *            activity context
+	 * @return true if file was renamed
+	 */
+	protected static boolean renameFile(String from, String to, Context ctx) {
+		return ctx.getFileStreamPath(from).renameTo(ctx.getFileStreamPath(to));
+	}
+
+	/**
+	 * Deletes file from internal storage.
+	 * 
+	 * @param filename
+	 *            file name
+	 * @param ctx
+	 *            activity context
+	 * @return true if file was deleted
+	 */
+	protected static boolean deleteFile(String filename, Context ctx) {
+		return ctx.deleteFile(filename);
+	}
+
 	/**
 	 * Removes all internal storage data.
 	 * 
@@ -135,4 +284,61 @@ public class StorageHandler {
 
 		return template.toString();
 	}
+
+	/**
+	 * Loads binary file from external or internal storage.
+	 * 
+	 * @param filename
+	 *            file to be loaded
+	 * @param ctx
+	 *            if activity context is present, file will be loaded from
+	 *            internal storage, otherwise external storage is used
+	 * @return content of file
+	 * @throws FileNotFoundException
+	 *             raises when file is not found
+	 * @throws IOException
+	 *             raises when couldn't read from file
+	 */
+	protected static byte[] loadBytes(String filename, Context ctx)
+			throws FileNotFoundException, IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		FileInputStream in = null;
+		int read;
+
+		try {
+			in = (ctx != null) ? ctx.openFileInput(filename)
+					: new FileInputStream(filename);
+
+			while ((read = in.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+
+		return content.toByteArray();
+	}
+
+	/**
+	 * Opens buffered file stream from external or internal storage. Caller is
+	 * responsible for closing stream.
+	 * 
+	 * @param filename
+	 *            file to be opened
+	 * @param ctx
+	 *            if activity context is present, file will be opened from
+	 *            internal storage, otherwise external storage is used
+	 * @return stream with content of file
+	 * @throws FileNotFoundException
+	 *             raises when file is not found
+	 */
+	protected static InputStream openFile(String filename, Context ctx)
+			throws FileNotFoundException {
+		FileInputStream in = (ctx != null) ? ctx.openFileInput(filename)
+				: new FileInputStream(filename);
+		return new BufferedInputStream(in, 8192);
+	}
 }
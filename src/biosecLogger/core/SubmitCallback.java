@@ -0,0 +1,29 @@
+package biosecLogger.core;
+
+/**
+ * Callback of asynchronous login and registration. Methods are called on main
+ * thread.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public interface SubmitCallback {
+
+	/**
+	 * Called when sample was submitted.
+	 *
+	 * @param result
+	 *            CORRECT, CREATED, UPDATED or COMPLETED constant
+	 */
+	void onSubmitted(int result);
+
+	/**
+	 * Called when submit failed. Exception is the same as thrown by
+	 * synchronous submit, or RejectedExecutionException when too many submits
+	 * are waiting.
+	 *
+	 * @param e
+	 *            cause of failure
+	 */
+	void onFailed(Exception e);
+}
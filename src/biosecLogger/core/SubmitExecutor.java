@@ -0,0 +1,117 @@
+package biosecLogger.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * SubmitExecutor runs login and registration off main thread. Users are
+ * assigned to fixed single thread stripes by user name, so submits of one user
+ * are evaluated in order they were made. Every stripe has bounded queue, submit
+ * is rejected when queue is full. Results are delivered on main thread.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class SubmitExecutor {
+
+	private ThreadPoolExecutor[] stripes;
+	private Handler handler;
+
+	/**
+	 * Creates executor with started threads.
+	 *
+	 * @param threads
+	 *            number of stripes
+	 * @param queueSize
+	 *            maximal number of waiting submits per stripe
+	 */
+	protected SubmitExecutor(int threads, int queueSize) {
+		stripes = new ThreadPoolExecutor[threads];
+		handler = new Handler(Looper.getMainLooper());
+
+		for (int i = 0; i < threads; i++) {
+			final String name = "BiosecSubmit-" + i;
+			stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(queueSize),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							return new Thread(r, name);
+						}
+					});
+		}
+	}
+
+	/**
+	 * Submits task of user. Callback is always called later on main thread,
+	 * also when task is rejected.
+	 *
+	 * @param username
+	 *            name of user, selects stripe
+	 * @param task
+	 *            login or registration
+	 * @param callback
+	 *            receives result of task
+	 */
+	protected void submit(String username, final Callable<Integer> task,
+			final SubmitCallback callback) {
+		ThreadPoolExecutor stripe = stripes[(username.hashCode() & 0x7FFFFFFF)
+				% stripes.length];
+
+		try {
+			stripe.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						deliver(task.call(), callback);
+					} catch (Exception e) {
+						deliver(e, callback);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			deliver(e, callback);
+		}
+	}
+
+	/**
+	 * Posts result to main thread.
+	 *
+	 * @param result
+	 *            result of task
+	 * @param callback
+	 *            receives result
+	 */
+	private void deliver(final int result, final SubmitCallback callback) {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				callback.onSubmitted(result);
+			}
+		});
+	}
+
+	/**
+	 * Posts failure to main thread.
+	 *
+	 * @param e
+	 *            cause of failure
+	 * @param callback
+	 *            receives failure
+	 */
+	private void deliver(final Exception e, final SubmitCallback callback) {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				callback.onFailed(e);
+			}
+		});
+	}
+}
@@ -0,0 +1,85 @@
+package biosecLogger.core;
+
+/**
+ * T-tests metric. Every test value has to lie in band around template
+ * average, band is widened by threshold percentage and standard deviation.
+ * Result is ratio of passed values.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class TTestMetric implements DistanceMetric {
+
+	private double thresholdP;
+
+	/**
+	 * Creates t-tests metric.
+	 *
+	 * @param oManager
+	 *            evaluation accuracy settings with threshold percentage
+	 */
+	protected TTestMetric(OptionsManager oManager) {
+		thresholdP = oManager.getThresholdP();
+	}
+
+	/**
+	 * Checks if single value lies in band around template average.
+	 *
+	 * @param lower
+	 *            lower multiplier of average
+	 * @param upper
+	 *            upper multiplier of average
+	 * @param average
+	 *            average template value
+	 * @param deviation
+	 *            standard deviation of template
+	 * @param value
+	 *            value which is compared against average
+	 * @return 1 if passed, else 0
+	 */
+	private static int passed(double lower, double upper, double average,
+			double deviation, double value) {
+		average = Math.abs(average);
+		deviation = Math.abs(deviation);
+		value = Math.abs(value);
+
+		return (value >= lower * average - deviation && value <= upper
+				* average + deviation) ? 1 : 0;
+	}
+
+	@Override
+	public double compare(double[] testValues, double[] averageValues,
+			double[] deviations, int offset, int length, double threshold) {
+		double lower = 1 - thresholdP;
+		double upper = 1 + thresholdP;
+
+		int p0 = 0;
+		int p1 = 0;
+
+		int i = 0;
+		int k = offset;
+		for (; i + 1 < length; i += 2, k += 2) {
+			p0 += passed(lower, upper, averageValues[k], deviations[k],
+					testValues[i]);
+			p1 += passed(lower, upper, averageValues[k + 1],
+					deviations[k + 1], testValues[i + 1]);
+		}
+
+		for (; i < length; i++, k++) {
+			p0 += passed(lower, upper, averageValues[k], deviations[k],
+					testValues[i]);
+		}
+
+		return (double) (p0 + p1) / length;
+	}
+
+	@Override
+	public double getMinimum() {
+		return 0;
+	}
+
+	@Override
+	public boolean usesThreshold() {
+		return false;
+	}
+}
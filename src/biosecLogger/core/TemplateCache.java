@@ -0,0 +1,126 @@
+package biosecLogger.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TemplateCache keeps compiled templates of users, so template of every user
+ * is compiled once and reused for all tested samples. Templates are stored
+ * per user and evaluation settings (flag, n-graphs, algorithm), so switching
+ * back to previous settings does not compile templates again. Template is
+ * compiled again when user's samples changed since it was compiled. Cache can
+ * be read by concurrent evaluations.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class TemplateCache {
+
+	private OptionsManager om;
+	private ConcurrentHashMap<Key, CompiledTemplate> templates;
+
+	/**
+	 * Key of cached template. Users are compared by identity.
+	 */
+	private static class Key {
+		private UserModel user;
+		private int flag;
+		private int graphs;
+		private int algorithm;
+
+		/**
+		 * Creates key for user and actual settings.
+		 *
+		 * @param user
+		 *            model of user
+		 * @param oManager
+		 *            evaluation settings
+		 */
+		protected Key(UserModel user, OptionsManager oManager) {
+			this.user = user;
+			flag = oManager.getFlag();
+			graphs = oManager.getGraphs();
+			algorithm = oManager.getEvaluationAlgorithm();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) obj;
+			return user == key.user && flag == key.flag
+					&& graphs == key.graphs && algorithm == key.algorithm;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = System.identityHashCode(user);
+			hash = 31 * hash + flag;
+			hash = 31 * hash + graphs;
+			return 31 * hash + algorithm;
+		}
+	}
+
+	/**
+	 * Creates empty cache.
+	 *
+	 * @param oManager
+	 *            evaluation settings
+	 */
+	protected TemplateCache(OptionsManager oManager) {
+		om = oManager;
+		templates = new ConcurrentHashMap<Key, CompiledTemplate>();
+	}
+
+	/**
+	 * Returns compiled template of user for actual settings. Template is
+	 * compiled if it is not cached yet or if cached template is not valid for
+	 * actual samples.
+	 *
+	 * @param user
+	 *            model of user with raw data
+	 * @return compiled template
+	 */
+	protected CompiledTemplate getTemplate(UserModel user) {
+		return getTemplate(user, om);
+	}
+
+	/**
+	 * Returns compiled template of user for given settings.
+	 *
+	 * @param user
+	 *            model of user with raw data
+	 * @param oManager
+	 *            evaluation settings
+	 * @return compiled template
+	 */
+	protected CompiledTemplate getTemplate(UserModel user,
+			OptionsManager oManager) {
+		Key key = new Key(user, oManager);
+		CompiledTemplate ct = templates.get(key);
+
+		if (ct == null || !ct.isValid(user, oManager)) {
+			ct = new CompiledTemplate(user, oManager);
+			templates.put(key, ct);
+		}
+
+		return ct;
+	}
+
+	/**
+	 * Returns number of cached templates.
+	 *
+	 * @return number of templates
+	 */
+	protected int size() {
+		return templates.size();
+	}
+
+	/**
+	 * Removes all cached templates.
+	 */
+	protected void clear() {
+		templates.clear();
+	}
+}
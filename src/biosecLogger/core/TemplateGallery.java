@@ -0,0 +1,267 @@
+package biosecLogger.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TemplateGallery holds many compiled templates for identification. N-graph
+ * averages and deviations of all templates are precomputed and stored one
+ * after another in single array per channel and n-graph, so sample is
+ * compared with every template in one pass over contiguous memory.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class TemplateGallery {
+
+	private int size;
+	private int graphs;
+
+	private String[] usernames;
+	private int[] passLengths;
+	private double[] errorRates;
+	private double[] longPressRates;
+
+	private double[][][] averages;
+	private double[][][] deviations;
+	private int[][][] offsets;
+	private double[][][] thresholds;
+	private DistanceMetric[][][] metrics;
+
+	/**
+	 * Creates gallery from compiled templates. Templates which were not
+	 * compiled for actual evaluation settings are skipped.
+	 *
+	 * @param templates
+	 *            compiled templates
+	 * @param oManager
+	 *            evaluation settings
+	 */
+	protected TemplateGallery(List<CompiledTemplate> templates,
+			OptionsManager oManager) {
+		List<CompiledTemplate> compatible = new ArrayList<CompiledTemplate>();
+		for (CompiledTemplate ct : templates) {
+			if (ct.isCompatible(oManager)) {
+				compatible.add(ct);
+			}
+		}
+
+		size = compatible.size();
+		graphs = oManager.getGraphs();
+
+		usernames = new String[size];
+		passLengths = new int[size];
+		errorRates = new double[size];
+		longPressRates = new double[size];
+
+		for (int t = 0; t < size; t++) {
+			CompiledTemplate ct = compatible.get(t);
+			usernames[t] = ct.getUsername();
+			passLengths[t] = ct.getPassLength();
+			errorRates[t] = ct.getErrorRate();
+			longPressRates[t] = ct.getLongPressRate();
+		}
+
+		averages = new double[KeystrokeSample.CHANNELS][][];
+		deviations = new double[KeystrokeSample.CHANNELS][][];
+		offsets = new int[KeystrokeSample.CHANNELS][][];
+		thresholds = new double[KeystrokeSample.CHANNELS][][];
+		metrics = new DistanceMetric[KeystrokeSample.CHANNELS][][];
+
+		if (size == 0) {
+			return;
+		}
+
+		for (int channel = 0; channel < KeystrokeSample.CHANNELS; channel++) {
+			if (compatible.get(0).getAverages(channel) != null) {
+				packChannel(compatible, channel, oManager
+						.getEvaluationAlgorithm());
+			}
+		}
+	}
+
+	/**
+	 * Packs n-graph vectors of single channel of all templates.
+	 *
+	 * @param templates
+	 *            compatible compiled templates
+	 * @param channel
+	 *            channel constant
+	 * @param algorithm
+	 *            evaluation algorithm
+	 */
+	private void packChannel(List<CompiledTemplate> templates, int channel,
+			int algorithm) {
+		boolean useThresholds = algorithm == OptionsManager.MANHATTAN
+				|| algorithm == OptionsManager.EUCLIDEAN;
+		boolean useMetrics = algorithm == OptionsManager.MAHALANOBIS;
+
+		averages[channel] = new double[graphs][];
+		deviations[channel] = new double[graphs][];
+		offsets[channel] = new int[graphs][size];
+		thresholds[channel] = useThresholds ? new double[graphs][size] : null;
+		metrics[channel] = useMetrics ? new DistanceMetric[graphs][size] : null;
+
+		for (int n = 1; n <= graphs; n++) {
+			int total = 0;
+			for (int t = 0; t < size; t++) {
+				offsets[channel][n - 1][t] = total;
+				total += Math.max(passLengths[t] + 1 - n, 0);
+			}
+			averages[channel][n - 1] = new double[total];
+			deviations[channel][n - 1] = new double[total];
+		}
+
+		NGraphs averageGraphs = new NGraphs(graphs);
+		NGraphs deviationGraphs = new NGraphs(graphs);
+
+		for (int t = 0; t < size; t++) {
+			CompiledTemplate ct = templates.get(t);
+			averageGraphs.compute(ct.getAverages(channel));
+			deviationGraphs.compute(ct.getDeviations(channel));
+
+			for (int n = 1; n <= graphs; n++) {
+				int offset = offsets[channel][n - 1][t];
+				System.arraycopy(averageGraphs.getSeries(n), 0,
+						averages[channel][n - 1], offset,
+						averageGraphs.getLength(n));
+				System.arraycopy(deviationGraphs.getSeries(n), 0,
+						deviations[channel][n - 1], offset,
+						deviationGraphs.getLength(n));
+
+				if (useThresholds) {
+					thresholds[channel][n - 1][t] = ct.getThreshold(channel, n);
+				}
+
+				if (useMetrics) {
+					metrics[channel][n - 1][t] = ct.getMetric(channel, n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns number of templates in gallery.
+	 *
+	 * @return number of templates
+	 */
+	protected int size() {
+		return size;
+	}
+
+	/**
+	 * Returns name of template's user.
+	 *
+	 * @param template
+	 *            index of template
+	 * @return name of user
+	 */
+	protected String getUsername(int template) {
+		return usernames[template];
+	}
+
+	/**
+	 * Returns length of password of template.
+	 *
+	 * @param template
+	 *            index of template
+	 * @return length of password
+	 */
+	protected int getPassLength(int template) {
+		return passLengths[template];
+	}
+
+	/**
+	 * Returns error rate of template.
+	 *
+	 * @param template
+	 *            index of template
+	 * @return error rate
+	 */
+	protected double getErrorRate(int template) {
+		return errorRates[template];
+	}
+
+	/**
+	 * Returns long press rate of template.
+	 *
+	 * @param template
+	 *            index of template
+	 * @return long press rate
+	 */
+	protected double getLongPressRate(int template) {
+		return longPressRates[template];
+	}
+
+	/**
+	 * Returns packed n-graph averages of channel of all templates.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @param n
+	 *            number of graphs
+	 * @return packed averages
+	 */
+	protected double[] getAverages(int channel, int n) {
+		return averages[channel][n - 1];
+	}
+
+	/**
+	 * Returns packed n-graph deviations of channel of all templates.
+	 *
+	 * @param channel
+	 *            channel constant
+	 * @param n
+	 *            number of graphs
+	 * @return packed deviations
+	 */
+	protected double[] getDeviations(int channel, int n) {
+		return deviations[channel][n - 1];
+	}
+
+	/**
+	 * Returns offset of template's vectors in packed arrays.
+	 *
+	 * @param template
+	 *            index of template
+	 * @param channel
+	 *            channel constant
+	 * @param n
+	 *            number of graphs
+	 * @return offset of vectors
+	 */
+	protected int getOffset(int template, int channel, int n) {
+		return offsets[channel][n - 1][template];
+	}
+
+	/**
+	 * Returns individual threshold of template for distance vector based
+	 * algorithm.
+	 *
+	 * @param template
+	 *            index of template
+	 * @param channel
+	 *            channel constant
+	 * @param n
+	 *            number of graphs
+	 * @return computed threshold
+	 */
+	protected double getThreshold(int template, int channel, int n) {
+		return thresholds[channel][n - 1][template];
+	}
+
+	/**
+	 * Returns template bound metric (Mahalanobis).
+	 *
+	 * @param template
+	 *            index of template
+	 * @param channel
+	 *            channel constant
+	 * @param n
+	 *            number of graphs
+	 * @return metric of template
+	 */
+	protected DistanceMetric getMetric(int template, int channel, int n) {
+		return metrics[channel][n - 1][template];
+	}
+}
@@ -0,0 +1,399 @@
+package biosecLogger.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import android.content.Context;
+import android.util.Log;
+import biosecLogger.exceptions.InvalidLoginException;
+
+/**
+ * TemplateJournal keeps accepted samples of user in append-only journal next
+ * to base template in internal storage, so login writes only one small record
+ * instead of whole template. Every record is protected by CRC32 and torn
+ * record at the end of journal is dropped on replay. After number of records
+ * journal is compacted in background: base template is written to temporary
+ * file, journal is deleted and temporary file is renamed to base template.
+ * Interrupted compaction is finished or rolled back on next load. Journal is
+ * kept only in internal storage, external copy of template is saved by
+ * compaction and by flush of templates with newer samples.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class TemplateJournal {
+
+	/** Number of journal records which starts compaction */
+	protected static final int COMPACT_RECORDS = 16;
+
+	protected static final String JOURNAL_EXTENSION = ".jnl";
+	protected static final String TEMP_EXTENSION = ".tmp";
+
+	/** First bytes of journal ("BSLJ") */
+	private static final int MAGIC = 0x42534C4A;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 5;
+
+	/* Record of sample with flying times in millis, written by old versions */
+	private static final int RECORD_SAMPLE_MILLIS = 1;
+	private static final int RECORD_SAMPLE = 2;
+
+	/** Journals are read and written only under this lock */
+	private static final Object LOCK = new Object();
+	private static final ExecutorService compactor = Executors
+			.newSingleThreadExecutor();
+
+	/** Users whose external template misses journal records */
+	private static final Map<String, UserModel> externalPending = new HashMap<String, UserModel>();
+
+	private String username;
+	private Context ctx;
+	private int records;
+
+	/**
+	 * Creates journal of user.
+	 *
+	 * @param username
+	 *            name of user
+	 * @param ctx
+	 *            activity context
+	 */
+	protected TemplateJournal(String username, Context ctx) {
+		this.username = username;
+		this.ctx = ctx;
+	}
+
+	/**
+	 * Returns file name of base template.
+	 *
+	 * @return file name
+	 */
+	protected String getTemplateName() {
+		return username + UserLoggerManager.EXTENSION;
+	}
+
+	private String getJournalName() {
+		return username + JOURNAL_EXTENSION;
+	}
+
+	private String getTempName() {
+		return getTemplateName() + TEMP_EXTENSION;
+	}
+
+	/**
+	 * Finishes or rolls back interrupted compaction. Temporary template is
+	 * complete only if journal was already deleted.
+	 */
+	private void recover() {
+		if (!StorageHandler.fileExists(getTempName(), ctx)) {
+			return;
+		}
+
+		if (StorageHandler.fileExists(getJournalName(), ctx)) {
+			StorageHandler.deleteFile(getTempName(), ctx);
+		} else if (!StorageHandler.renameFile(getTempName(),
+				getTemplateName(), ctx)) {
+			Log.w(UserLoggerManager.LOGNAME, "Could not recover template of "
+					+ username);
+		}
+	}
+
+	/**
+	 * Loads base template of user and replays journal.
+	 *
+	 * @param user
+	 *            empty user model
+	 * @param password
+	 *            encrypted password with sha256
+	 * @return true on success, false when template is wrong
+	 * @throws FileNotFoundException
+	 *             raises when user does not exist
+	 * @throws IOException
+	 *             raises when template could not be read
+	 * @throws InvalidLoginException
+	 *             raises when password does not match
+	 */
+	protected boolean load(UserModel user, String password)
+			throws FileNotFoundException, IOException, InvalidLoginException {
+		synchronized (LOCK) {
+			recover();
+
+			InputStream in = StorageHandler.openFile(getTemplateName(), ctx);
+			try {
+				/* All channels are loaded, template is compacted later */
+				if (!user.loadTemplate(in, password, UserModel.ALL_CHANNELS)) {
+					return false;
+				}
+			} finally {
+				in.close();
+			}
+
+			replay(user);
+			return true;
+		}
+	}
+
+	/**
+	 * Adds samples from journal to loaded user model. Replay stops at first
+	 * damaged record and journal is truncated to valid records, so new
+	 * records are not appended after damaged one.
+	 *
+	 * @param user
+	 *            user model loaded from base template
+	 */
+	protected void replay(UserModel user) {
+		synchronized (LOCK) {
+			records = 0;
+
+			byte[] data;
+			try {
+				data = StorageHandler.loadBytes(getJournalName(), ctx);
+			} catch (IOException e) {
+				/* Journal is empty */
+				return;
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+					data));
+			int valid = 0;
+
+			try {
+				if (data.length < HEADER_LENGTH || in.readInt() != MAGIC
+						|| in.readUnsignedByte() != VERSION) {
+					throw new IOException("Unknown journal format");
+				}
+				valid = HEADER_LENGTH;
+
+				while (valid < data.length) {
+					int length = SampleCodec.readVarInt(in);
+					if (length > in.available() - 4) {
+						throw new IOException("Truncated journal record");
+					}
+
+					byte[] payload = new byte[length];
+					in.readFully(payload);
+					if (in.readInt() != checksum(payload)) {
+						throw new IOException("Damaged journal record");
+					}
+
+					DataInputStream record = new DataInputStream(
+							new ByteArrayInputStream(payload));
+					int type = record.readUnsignedByte();
+					if (type == RECORD_SAMPLE) {
+						user.addRow(SampleCodec.readSample(record,
+								SampleCodec.MICROS));
+					} else if (type == RECORD_SAMPLE_MILLIS) {
+						user.addRow(SampleCodec.readSample(record,
+								SampleCodec.MILLIS));
+					}
+
+					records++;
+					valid = data.length - in.available();
+				}
+			} catch (IOException e) {
+				Log.w(UserLoggerManager.LOGNAME, "Journal of " + username
+						+ " truncated after " + records + " records", e);
+				truncate(valid);
+			}
+		}
+	}
+
+	/**
+	 * Appends accepted sample to journal. When journal is long enough,
+	 * compaction of user's template is started in background.
+	 *
+	 * @param user
+	 *            user model with added sample
+	 * @param row
+	 *            accepted sample
+	 * @param external
+	 *            if true, compacted template is saved to external storage too
+	 * @return true if compaction was started, else false
+	 * @throws IOException
+	 *             raises when record could not be written
+	 */
+	protected boolean append(UserModel user, KeystrokeSample row,
+			boolean external) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeByte(RECORD_SAMPLE);
+		SampleCodec.writeSample(out, row);
+		out.flush();
+
+		byte[] data = payload.toByteArray();
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		out = new DataOutputStream(record);
+
+		synchronized (LOCK) {
+			if (StorageHandler.fileLength(getJournalName(), ctx) == 0) {
+				out.writeInt(MAGIC);
+				out.writeByte(VERSION);
+			}
+			SampleCodec.writeVarLong(out, data.length);
+			out.write(data);
+			out.writeInt(checksum(data));
+			out.flush();
+
+			StorageHandler.appendBytes(getJournalName(),
+					record.toByteArray(), ctx);
+			records++;
+
+			if (records >= COMPACT_RECORDS) {
+				/* Compacted template covers all records */
+				externalPending.remove(username);
+				compact(user.saveTemplateToBytes(), external);
+				return true;
+			}
+
+			if (external) {
+				externalPending.put(username, user);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Starts background compaction. Compaction is skipped when journal was
+	 * changed since snapshot was taken, next compaction or flush covers it.
+	 *
+	 * @param template
+	 *            snapshot of user's template including all journal records
+	 * @param external
+	 *            if true, template is saved to external storage too
+	 */
+	private void compact(final byte[] template, final boolean external) {
+		final long length = StorageHandler.fileLength(getJournalName(), ctx);
+		records = 0;
+
+		compactor.execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (LOCK) {
+					if (StorageHandler.fileLength(getJournalName(), ctx) != length) {
+						Log.w(UserLoggerManager.LOGNAME, "Compaction of "
+								+ username + " skipped, journal was changed");
+						return;
+					}
+
+					try {
+						StorageHandler.saveBytes(getTempName(), template, ctx);
+						StorageHandler.deleteFile(getJournalName(), ctx);
+						recover();
+						if (external) {
+							StorageHandler.saveBytes(getTemplateName(),
+									template, null);
+						}
+					} catch (IOException e) {
+						Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+						StorageHandler.deleteFile(getTempName(), ctx);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Saves templates with samples which are only in journal to external
+	 * storage. Flush runs in background after started compactions.
+	 * 
+	 * @return future of flush
+	 */
+	protected static Future<?> flushExternal() {
+		return compactor.submit(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (LOCK) {
+					for (UserModel user : externalPending.values()) {
+						try {
+							/* Copy is not changed by login during saving */
+							StorageHandler.saveBytes(user.getUsername()
+									+ UserLoggerManager.EXTENSION, user.copy()
+									.saveTemplateToBytes(), null);
+						} catch (IOException e) {
+							Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+						}
+					}
+					externalPending.clear();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Saves pending external templates and waits until they are written.
+	 */
+	protected static void awaitFlushExternal() {
+		try {
+			flushExternal().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Forgets pending external templates of all users, when data files are
+	 * removed.
+	 */
+	protected static void clearExternal() {
+		synchronized (LOCK) {
+			externalPending.clear();
+		}
+	}
+
+	/**
+	 * Deletes journal after whole template was saved.
+	 */
+	protected void reset() {
+		synchronized (LOCK) {
+			externalPending.remove(username);
+			StorageHandler.deleteFile(getJournalName(), ctx);
+			StorageHandler.deleteFile(getTempName(), ctx);
+			records = 0;
+		}
+	}
+
+	/**
+	 * Truncates journal to valid records.
+	 *
+	 * @param length
+	 *            length of valid records
+	 */
+	private void truncate(int length) {
+		try {
+			if (length <= HEADER_LENGTH) {
+				StorageHandler.deleteFile(getJournalName(), ctx);
+			} else {
+				StorageHandler.truncateFile(getJournalName(), length, ctx);
+			}
+		} catch (IOException e) {
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Computes CRC32 of record.
+	 *
+	 * @param data
+	 *            record payload
+	 * @return checksum
+	 */
+	private static int checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+}
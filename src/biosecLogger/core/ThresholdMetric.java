@@ -0,0 +1,38 @@
+package biosecLogger.core;
+
+/**
+ * Base class for distance vector metrics which compare distance with user's
+ * individual threshold computed by leave-one-out method.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public abstract class ThresholdMetric implements DistanceMetric {
+
+	/**
+	 * Converts distance to similarity. Distance under threshold is full
+	 * match, longer distance decreases similarity linearly.
+	 *
+	 * @param score
+	 *            distance between vectors
+	 * @param threshold
+	 *            user's computed threshold
+	 * @return similarity between vectors
+	 */
+	protected static double similarity(double score, double threshold) {
+		return (score <= threshold) ? 1 : 1 - Math.abs(1 - (score / threshold));
+	}
+
+	/**
+	 * Distance over threshold decreases similarity without bound.
+	 */
+	@Override
+	public double getMinimum() {
+		return Double.NEGATIVE_INFINITY;
+	}
+
+	@Override
+	public boolean usesThreshold() {
+		return true;
+	}
+}
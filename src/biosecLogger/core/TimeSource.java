@@ -0,0 +1,28 @@
+package biosecLogger.core;
+
+/**
+ * Source of monotonic time used to measure keystrokes. Time does not jump when
+ * wall clock is adjusted. Logger uses system time source, other source can be
+ * set to replay keystrokes with exact times.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public interface TimeSource {
+
+	/** Time source backed by System.nanoTime */
+	TimeSource SYSTEM = new TimeSource() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	/**
+	 * Returns monotonic time. Only differences of returned times are
+	 * meaningful.
+	 *
+	 * @return time in nanoseconds
+	 */
+	long nanoTime();
+}
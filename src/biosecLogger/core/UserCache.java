@@ -0,0 +1,241 @@
+package biosecLogger.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * UserCache keeps recently logged users in memory, so repeated login on shared
+ * device does not read and parse user's template again. Every entry holds
+ * user model, journal and compiled template of user. Cache is bounded by
+ * number of users and by estimated memory of their samples, least recently
+ * used users are evicted first. Entry must be invalidated whenever template
+ * of user is saved outside of cached model.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class UserCache {
+
+	/** Estimated memory of single key of biometric sample in bytes */
+	private static final int KEY_SIZE = 96;
+
+	/** Estimated memory of user without samples in bytes */
+	private static final int ENTRY_SIZE = 1024;
+
+	private int maxUsers;
+	private long maxBytes;
+	private long bytes;
+
+	private int hits;
+	private int misses;
+
+	private LinkedHashMap<String, Entry> entries;
+
+	/**
+	 * Cached user with its journal and compiled template.
+	 */
+	private static class Entry {
+		private UserModel user;
+		private TemplateJournal journal;
+		private CompiledTemplate compiled;
+		private long size;
+	}
+
+	/**
+	 * Creates empty cache.
+	 *
+	 * @param maxUsers
+	 *            maximal number of cached users
+	 * @param maxBytes
+	 *            maximal estimated memory of cached users in bytes
+	 */
+	protected UserCache(int maxUsers, long maxBytes) {
+		this.maxUsers = maxUsers;
+		this.maxBytes = maxBytes;
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Estimates memory of user's samples.
+	 *
+	 * @param user
+	 *            model of user
+	 * @return estimated memory in bytes
+	 */
+	private static long estimateSize(UserModel user) {
+		long size = ENTRY_SIZE;
+		for (KeystrokeSample sample : user.getSamples()) {
+			size += (long) sample.size() * KEY_SIZE;
+		}
+		return size;
+	}
+
+	/**
+	 * Returns cached user. Hit or miss is counted.
+	 *
+	 * @param username
+	 *            name of user
+	 * @return model of user or null if user is not cached
+	 */
+	protected synchronized UserModel getUser(String username) {
+		Entry entry = entries.get(username);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.user;
+	}
+
+	/**
+	 * Returns journal of cached user.
+	 *
+	 * @param username
+	 *            name of user
+	 * @return journal or null if user is not cached
+	 */
+	protected synchronized TemplateJournal getJournal(String username) {
+		Entry entry = entries.get(username);
+		return (entry != null) ? entry.journal : null;
+	}
+
+	/**
+	 * Returns compiled template of cached user.
+	 *
+	 * @param username
+	 *            name of user
+	 * @return compiled template or null if it is not cached
+	 */
+	protected synchronized CompiledTemplate getCompiled(String username) {
+		Entry entry = entries.get(username);
+		return (entry != null) ? entry.compiled : null;
+	}
+
+	/**
+	 * Adds loaded user to cache. Least recently used users are evicted when
+	 * limits are exceeded.
+	 *
+	 * @param user
+	 *            loaded model of user
+	 * @param journal
+	 *            journal of user
+	 */
+	protected synchronized void putUser(UserModel user, TemplateJournal journal) {
+		Entry entry = new Entry();
+		entry.user = user;
+		entry.journal = journal;
+		entry.size = estimateSize(user);
+
+		Entry previous = entries.put(user.getUsername(), entry);
+		if (previous != null) {
+			bytes -= previous.size;
+		}
+		bytes += entry.size;
+
+		evict();
+	}
+
+	/**
+	 * Sets compiled template of cached user. Template is ignored if user is
+	 * not cached.
+	 *
+	 * @param username
+	 *            name of user
+	 * @param compiled
+	 *            compiled template
+	 */
+	protected synchronized void putCompiled(String username,
+			CompiledTemplate compiled) {
+		Entry entry = entries.get(username);
+		if (entry != null) {
+			entry.compiled = compiled;
+		}
+	}
+
+	/**
+	 * Updates estimated memory of user after its samples changed.
+	 *
+	 * @param username
+	 *            name of user
+	 */
+	protected synchronized void update(String username) {
+		Entry entry = entries.get(username);
+		if (entry != null) {
+			bytes -= entry.size;
+			entry.size = estimateSize(entry.user);
+			bytes += entry.size;
+			evict();
+		}
+	}
+
+	/**
+	 * Removes user from cache.
+	 *
+	 * @param username
+	 *            name of user
+	 */
+	protected synchronized void invalidate(String username) {
+		Entry entry = entries.remove(username);
+		if (entry != null) {
+			bytes -= entry.size;
+		}
+	}
+
+	/**
+	 * Removes all users from cache.
+	 */
+	protected synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Evicts least recently used users until cache fits its limits.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()
+				&& (entries.size() > maxUsers || bytes > maxBytes)) {
+			bytes -= it.next().getValue().size;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Returns number of cached users.
+	 *
+	 * @return number of users
+	 */
+	protected synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns estimated memory of cached users.
+	 *
+	 * @return memory in bytes
+	 */
+	protected synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns number of logins served from cache.
+	 *
+	 * @return number of hits
+	 */
+	protected synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns number of logins which loaded user from storage.
+	 *
+	 * @return number of misses
+	 */
+	protected synchronized int getMisses() {
+		return misses;
+	}
+}
@@ -2,12 +2,15 @@ package biosecLogger.core;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import android.content.Context;
+import android.util.Log;
 import android.view.View.OnKeyListener;
 import android.widget.EditText;
 import biosecLogger.exceptions.ExistingUserException;
@@ -50,9 +53,39 @@ public enum UserLoggerManager {
 	public static final int UNMOUNTED = 2;
 
 	protected static final String EXTENSION = ".log";
+	protected static final String COMPILED_EXTENSION = ".tpl";
 	protected static final String SETTINGS_FILE = "settings.ini";
 
-	private UserModel user;
+	/** Maximal number of users kept in memory */
+	protected static final int MAX_CACHED_USERS = 8;
+
+	/** Maximal estimated memory of users kept in memory */
+	protected static final long MAX_CACHED_BYTES = 1024 * 1024;
+
+	/** Number of threads evaluating asynchronous submits */
+	protected static final int SUBMIT_THREADS = 2;
+
+	/** Maximal number of waiting submits per thread */
+	protected static final int SUBMIT_QUEUE_SIZE = 8;
+
+	private final UserCache cache = new UserCache(MAX_CACHED_USERS,
+			MAX_CACHED_BYTES);
+	private final SubmitExecutor executor = new SubmitExecutor(
+			SUBMIT_THREADS, SUBMIT_QUEUE_SIZE);
+
+	/** Compiles templates of accepted samples in background */
+	private final ExecutorService compiler = Executors
+			.newSingleThreadExecutor();
+
+	/** Registration submits are evaluated one by one under this lock */
+	private final Object registerLock = new Object();
+
+	/** User being registered, changed only under registration lock */
+	private volatile UserModel user;
+
+	/** Samples count of user being registered, read on main thread */
+	private volatile int counter;
+
 	private Logger logger;
 	private CompositeOnKeyListener listeners;
 	private OptionsManager oManager;
@@ -90,6 +123,7 @@ public enum UserLoggerManager {
 	private void initInstance(Context ctx, EditText editText,
 			OptionsManager oManager) {
 		this.user = null;
+		this.counter = 0;
 		this.logger = Logger.getInstance(ctx);
 		this.oManager = oManager;
 
@@ -103,30 +137,142 @@ public enum UserLoggerManager {
 	}
 
 	/**
-	 * Loads user from internal storage into UserModel instance.
+	 * Loaded user with its journal. Login keeps its own session, so logins of
+	 * different users can be evaluated concurrently.
+	 */
+	private static class Session {
+		private UserModel user;
+		private TemplateJournal journal;
+	}
+
+	/**
+	 * Loads user from memory cache or from internal storage into UserModel
+	 * instance. Samples accepted since last compaction are replayed from
+	 * journal.
 	 * 
 	 * @param username
 	 *            name of user
 	 * @param password
 	 *            encrypted user's password
-	 * @return true on success else false
+	 * @return loaded user with journal
 	 * @throws IOException
-	 *             raises when file does not exist, or couldn't be read
+	 *             raises when file couldn't be read or is damaged
 	 * @throws InvalidLoginException
-	 *             raises when password does not match
+	 *             raises when user does not exist or password does not match
 	 */
-	private boolean loadUser(String username, String password)
+	private Session loadUser(String username, String password)
 			throws IOException, InvalidLoginException {
-		String template;
+		Session session = new Session();
+
+		session.user = cache.getUser(username);
+		if (session.user != null) {
+			if (!session.user.checkUser(username, password)) {
+				throw new InvalidLoginException();
+			}
+
+			session.journal = cache.getJournal(username);
+			return session;
+		}
+
+		session.user = new UserModel(null, null,
+				oManager.getTemplateHoldCounter());
+		session.journal = new TemplateJournal(username, ctx);
+
 		try {
-			template = StorageHandler.loadFile(username + EXTENSION, ctx);
+			if (!session.journal.load(session.user, password)) {
+				throw new IOException("Damaged template of " + username);
+			}
 		} catch (FileNotFoundException e) {
 			/* User not exists */
 			throw new InvalidLoginException();
 		}
 
-		user = new UserModel(null, null, oManager.getTemplateHoldCounter());
-		return user.loadTemplateFromString(template, password);
+		cache.putUser(session.user, session.journal);
+		return session;
+	}
+
+	/**
+	 * Loads compiled template of loaded user from memory cache or internal
+	 * storage. Template compiled from older samples is used, it is compiled
+	 * again in background when journal is compacted. If compiled template is
+	 * missing or does not match actual settings, template is compiled again
+	 * and saved.
+	 * 
+	 * @param user
+	 *            loaded user
+	 * @return compiled template of user
+	 */
+	private CompiledTemplate loadCompiledTemplate(UserModel user) {
+		CompiledTemplate compiled = cache.getCompiled(user.getUsername());
+		if (compiled != null && compiled.isCompatible(oManager)) {
+			return compiled;
+		}
+
+		compiled = new CompiledTemplate();
+		try {
+			if (compiled.loadTemplateFromString(StorageHandler.loadFile(
+					user.getUsername() + COMPILED_EXTENSION, ctx))
+					&& compiled.isCompatible(oManager)) {
+				cache.putCompiled(user.getUsername(), compiled);
+				return compiled;
+			}
+		} catch (IOException e) {
+			/* Template was not compiled yet */
+		}
+
+		compiled = new CompiledTemplate(user, oManager);
+		saveCompiledTemplate(user, compiled);
+		return compiled;
+	}
+
+	/**
+	 * Saves compiled template of user to memory cache and internal storage.
+	 * Failure is not fatal, template is compiled again on next login.
+	 * 
+	 * @param user
+	 *            owner of template
+	 * @param compiled
+	 *            compiled template
+	 */
+	private void saveCompiledTemplate(UserModel user,
+			CompiledTemplate compiled) {
+		cache.putCompiled(user.getUsername(), compiled);
+
+		String template = compiled.saveTemplateToString();
+		if (template == null) {
+			return;
+		}
+
+		try {
+			StorageHandler.saveFile(user.getUsername() + COMPILED_EXTENSION,
+					template, ctx, false);
+		} catch (IOException e) {
+			Log.w(LOGNAME, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Compiles template of user in background and saves it. Template is
+	 * compiled from copy of user, so samples can be added meanwhile. Template
+	 * is dropped when settings were changed during compilation.
+	 * 
+	 * @param user
+	 *            loaded user
+	 */
+	private void compileLater(UserModel user) {
+		final UserModel snapshot = user.copy();
+		final OptionsManager options = oManager;
+
+		compiler.execute(new Runnable() {
+			@Override
+			public void run() {
+				CompiledTemplate compiled = new CompiledTemplate(snapshot,
+						options);
+				if (compiled.isCompatible(oManager)) {
+					saveCompiledTemplate(snapshot, compiled);
+				}
+			}
+		});
 	}
 
 	/**
@@ -141,13 +287,6 @@ public enum UserLoggerManager {
 				Hex.encodeHex(DigestUtils.sha256(password.getBytes())));
 	}
 
-	/**
-	 * Adds biometric sample to user model.
-	 */
-	private void saveLoggedValues() {
-		user.addRow(logger.submit());
-	}
-
 	/**
 	 * Adds external on key listener to edit text.
 	 * 
@@ -167,7 +306,65 @@ public enum UserLoggerManager {
 	 * @return counter samples count
 	 */
 	public int getCounter() {
-		return (user != null) ? user.getCounter() : 0;
+		return counter;
+	}
+
+	/**
+	 * Adds sample to template of registered user. Registered user is shared
+	 * by registration submits, so they hold registration lock. Lock is not
+	 * used by main thread, so it is not blocked by saving of template.
+	 * 
+	 * @param username
+	 *            name of new user
+	 * @param password
+	 *            plain password of new user
+	 * @param row
+	 *            logged biometric sample
+	 * @return CREATED, UPDATED or COMPLETED constant
+	 * @throws InvalidLoginException
+	 *             raises when password does not match
+	 * @throws ExistingUserException
+	 *             raises when user already exists in storage
+	 * @throws IOException
+	 *             raises when new user couldn't be saved
+	 */
+	private int register(String username, String password,
+			KeystrokeSample row) throws ExistingUserException, IOException,
+			InvalidLoginException {
+		password = encrypt(password);
+
+		synchronized (registerLock) {
+			/* Test if user exists */
+			if (StorageHandler.fileExists(username + EXTENSION, ctx)) {
+				throw new ExistingUserException();
+			}
+
+			UserModel user = this.user;
+			if (user == null) {
+				user = new UserModel(username, password,
+						oManager.getTemplateHoldCounter());
+				user.addRow(row);
+				this.user = user;
+				counter = user.getCounter();
+				return CREATED;
+
+			} else if (user.checkUser(username, password) == true) {
+				user.addRow(row);
+				counter = user.getCounter();
+				if (counter == oManager.getTemplateCreateCounter()) {
+					saveTemplate(user);
+					new TemplateJournal(username, ctx).reset();
+					saveCompiledTemplate(user, new CompiledTemplate(user,
+							oManager));
+					return COMPLETED;
+				} else {
+					return UPDATED;
+				}
+
+			} else {
+				throw new InvalidLoginException();
+			}
+		}
 	}
 
 	/**
@@ -187,54 +384,71 @@ public enum UserLoggerManager {
 	 */
 	public int submitSample(String username, String password)
 			throws ExistingUserException, IOException, InvalidLoginException {
-		password = encrypt(password);
 		editText.setText("");
 
-		/* Test if user exists, we expect that FileNotFoundException */
-		try {
-			StorageHandler.loadFile(username + EXTENSION, ctx);
-			logger.initValues();
-			throw new ExistingUserException();
-		} catch (FileNotFoundException e) {
+		int result = register(username, password, logger.submit());
+		if (result == COMPLETED) {
+			stopLogging();
 		}
+		return result;
+	}
 
-		if (user == null) {
-			user = new UserModel(username, password,
-					oManager.getTemplateHoldCounter());
-			saveLoggedValues();
-			return CREATED;
+	/**
+	 * Submit new sample during registration on background thread. Sample is
+	 * taken immediately, template is updated and saved later.
+	 * 
+	 * @param username
+	 *            name of new user
+	 * @param password
+	 *            password of new user
+	 * @param callback
+	 *            receives CREATED, UPDATED or COMPLETED constant, or
+	 *            exception thrown by submitSample
+	 */
+	public void submitSampleAsync(final String username,
+			final String password, final SubmitCallback callback) {
+		editText.setText("");
+		final KeystrokeSample row = logger.submit();
 
-		} else if (user.checkUser(username, password) == true) {
-			saveLoggedValues();
-			if (user.getCounter() == oManager.getTemplateCreateCounter()) {
-				saveTemplate();
-				stopLogging();
-				return COMPLETED;
-			} else {
-				return UPDATED;
+		executor.submit(username, new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return register(username, password, row);
+			}
+		}, new SubmitCallback() {
+			@Override
+			public void onSubmitted(int result) {
+				if (result == COMPLETED) {
+					stopLogging();
+				}
+				callback.onSubmitted(result);
 			}
 
-		} else {
-			logger.initValues();
-			throw new InvalidLoginException();
-		}
+			@Override
+			public void onFailed(Exception e) {
+				callback.onFailed(e);
+			}
+		});
 	}
 
 	/**
-	 * Save template to internal (and optionally external) storage.
+	 * Save template to internal (and optionally external) storage. Template
+	 * is saved in binary format, cached user is invalidated.
 	 * 
+	 * @param user
+	 *            registered user
 	 * @throws IOException
 	 *             raises when file couldn't be saved
 	 */
-	private void saveTemplate() throws IOException {
-		String template = user.saveTemplateToString();
-		StorageHandler.saveFile(user.getUsername() + EXTENSION, template, ctx,
-				false);
+	private void saveTemplate(UserModel user) throws IOException {
+		cache.invalidate(user.getUsername());
+
+		byte[] template = user.saveTemplateToBytes();
+		StorageHandler.saveBytes(user.getUsername() + EXTENSION, template, ctx);
 		if (oManager.checkExternalSaving()) {
-			StorageHandler.saveFile(user.getUsername() + EXTENSION, template,
-					null, false);
+			StorageHandler.saveBytes(user.getUsername() + EXTENSION, template,
+					null);
 		}
-		stopLogging();
 	}
 
 	/**
@@ -245,16 +459,29 @@ public enum UserLoggerManager {
 	}
 
 	/**
-	 * Pause logging.
+	 * Pause logging. Samples of accepted logins which are only in journals
+	 * are saved to external templates in background.
 	 */
 	public void stopLogging() {
 		logger.stopLogging();
+		TemplateJournal.flushExternal();
+	}
+
+	/**
+	 * Saves samples which are only in journals to external templates and
+	 * waits until they are written. Must be called before external templates
+	 * are exported and not from main thread.
+	 */
+	public static void flushExternalTemplates() {
+		TemplateJournal.awaitFlushExternal();
 	}
 
 	/**
 	 * Removes internal storage data.
 	 */
 	public void removeDataFiles() {
+		cache.clear();
+		TemplateJournal.clearExternal();
 		StorageHandler.removeDataFiles(ctx);
 	}
 
@@ -267,6 +494,51 @@ public enum UserLoggerManager {
 		return StorageHandler.checkEnvironment();
 	}
 
+	/**
+	 * Evaluates sample of user during login process. Accepted sample is added
+	 * to user's template and journal. Login does not compile template, it is
+	 * compiled in background when journal is compacted.
+	 * 
+	 * @param username
+	 *            name of the user
+	 * @param password
+	 *            plain password of the user
+	 * @param row
+	 *            logged biometric sample
+	 * @return CORRECT on success
+	 * @throws PatternMismatchException
+	 *             raises when LoginEvalutor evaluates pattern mismatch
+	 * @throws InvalidLoginException
+	 *             raises when passwords does not match
+	 * @throws IOException
+	 *             raises when there is problem with read/write to file
+	 */
+	private int login(String username, String password, KeystrokeSample row)
+			throws PatternMismatchException, IOException, InvalidLoginException {
+		Session session = loadUser(username, encrypt(password));
+		UserModel user = session.user;
+		LoginEvaluator loginEvaluator = new LoginEvaluator(oManager);
+
+		if (loginEvaluator.checkPatter(loadCompiledTemplate(user), row)) {
+			user.addRow(row);
+			try {
+				if (session.journal.append(user, row,
+						oManager.checkExternalSaving())) {
+					compileLater(user);
+				}
+			} catch (IOException e) {
+				/* Cached user differs from storage */
+				cache.invalidate(user.getUsername());
+				throw e;
+			}
+			cache.update(user.getUsername());
+			return CORRECT;
+		} else {
+			/* Rejected sample does not change template */
+			throw new PatternMismatchException();
+		}
+	}
+
 	/**
 	 * Submits and evaluates user during login process.
 	 * 
@@ -284,28 +556,55 @@ public enum UserLoggerManager {
 	 */
 	public int submitUser(String username, String password)
 			throws PatternMismatchException, IOException, InvalidLoginException {
-		password = encrypt(password);
 		editText.setText("");
 
 		try {
-			loadUser(username, password);
-		} catch (InvalidLoginException e) {
-			logger.initValues();
-			throw new InvalidLoginException();
+			int result = login(username, password, logger.submit());
+			stopLogging();
+			return result;
+		} catch (PatternMismatchException e) {
+			stopLogging();
+			throw e;
 		}
+	}
 
-		List<LoggedKey> row = logger.submit();
-		LoginEvaluator loginEvaluator = new LoginEvaluator(oManager);
+	/**
+	 * Submits and evaluates user during login process on background thread.
+	 * Sample is taken immediately, user is loaded and evaluated later. Logins
+	 * of one user are evaluated in order.
+	 * 
+	 * @param username
+	 *            name of the user
+	 * @param password
+	 *            password of the user
+	 * @param callback
+	 *            receives CORRECT on success, or exception thrown by
+	 *            submitUser
+	 */
+	public void submitUserAsync(final String username, final String password,
+			final SubmitCallback callback) {
+		editText.setText("");
+		final KeystrokeSample row = logger.submit();
 
-		if (loginEvaluator.checkPatter(user, row)) {
-			user.addRow(row);
-			saveTemplate();
-			stopLogging();
-			return CORRECT;
-		} else {
-			logger.initValues();
-			saveTemplate();
-			throw new PatternMismatchException();
-		}
+		executor.submit(username, new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return login(username, password, row);
+			}
+		}, new SubmitCallback() {
+			@Override
+			public void onSubmitted(int result) {
+				stopLogging();
+				callback.onSubmitted(result);
+			}
+
+			@Override
+			public void onFailed(Exception e) {
+				if (e instanceof PatternMismatchException) {
+					stopLogging();
+				}
+				callback.onFailed(e);
+			}
+		});
 	}
 }
\ No newline at end of file
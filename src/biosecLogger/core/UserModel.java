@@ -1,15 +1,22 @@
 package biosecLogger.core;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import android.util.Log;
 import biosecLogger.exceptions.InvalidLoginException;
 
+import com.google.gson.stream.JsonReader;
+
 /**
  * Class contains information about user and raw logged data.
  * 
@@ -18,12 +25,30 @@ import biosecLogger.exceptions.InvalidLoginException;
  */
 public class UserModel {
 
+	/** First bytes of binary template ("BSLT") */
+	protected static final int MAGIC = 0x42534C54;
+
+	/** Version of binary template format */
+	protected static final int FORMAT_VERSION = 3;
+
+	/** Version of binary template format without revision */
+	private static final int NO_REVISION_VERSION = 2;
+
+	/** Version of binary template format with flying times in millis */
+	private static final int MILLIS_VERSION = 1;
+
+	/** Flag of all logged sensor channels */
+	protected static final int ALL_CHANNELS = OptionsManager.FLYINGTIMES
+			| OptionsManager.ACCELERANCE | OptionsManager.ORIENTATION;
+
 	private String username;
 	private String password;
 	private int templateHoldCount;
 	private int counter;
+	private long revision;
 	
-	private List<List<LoggedKey>> loggedKeys;
+	private List<KeystrokeSample> samples;
+	private SampleStatistics statistics;
 
 	/**
 	 * Creates new instance of UserModel class.
@@ -41,7 +66,7 @@ public class UserModel {
 		this.templateHoldCount = templateHoldCount;
 		this.counter = 0;
 		
-		this.loggedKeys = new ArrayList<List<LoggedKey>>();
+		this.samples = new ArrayList<KeystrokeSample>();
 	}
 
 	/**
@@ -68,25 +93,100 @@ public class UserModel {
 	}
 
 	/**
-	 * Returns raw logged keys.
+	 * Returns revision of samples. Revision is increased whenever sample is
+	 * added or removed, so it changes also when template window is full and
+	 * samples count stays the same.
+	 * 
+	 * @return revision of samples
+	 */
+	protected long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Returns raw biometric samples.
 	 * 
-	 * @return logged keys
+	 * @return biometric samples
 	 */
-	protected List<List<LoggedKey>> getLoggedKeys() {
-		return loggedKeys;
+	protected List<KeystrokeSample> getSamples() {
+		return samples;
 	}
 
 	/**
-	 * Adds new sample to logged samples.
+	 * Adds new sample to logged samples. Oldest samples are evicted when hold
+	 * count is reached. Running statistics are updated with both changes.
+	 * Method is synchronized with getStatistics, so statistics are not built
+	 * while sample is added.
+	 * 
+	 * @param row
+	 *            biometric sample
 	 */
-	protected void addRow(List<LoggedKey> row) {
+	protected synchronized void addRow(KeystrokeSample row) {
 		while (counter >= templateHoldCount) {
-			loggedKeys.remove(0);
+			removeRow(0);
 			decrCounter();
 		}
 
-		loggedKeys.add(row);
+		samples.add(row);
+		if (statistics != null) {
+			statistics.add(row);
+		}
 		incrCounter();
+		revision++;
+	}
+
+	/**
+	 * Removes sample from logged samples and from running statistics. Method
+	 * is synchronized with getStatistics.
+	 * 
+	 * @param index
+	 *            index of sample
+	 * @return removed sample
+	 */
+	protected synchronized KeystrokeSample removeRow(int index) {
+		KeystrokeSample row = samples.remove(index);
+		if (statistics != null) {
+			statistics.remove(row);
+		}
+		revision++;
+		return row;
+	}
+
+	/**
+	 * Returns copy of user with the same samples, counter and revision.
+	 * Samples themselves are shared, they are not changed after they are
+	 * added. Copy is used to compile template in background while new samples
+	 * are added to user.
+	 * 
+	 * @return copy of user
+	 */
+	protected synchronized UserModel copy() {
+		UserModel copy = new UserModel(username, password, templateHoldCount);
+		copy.samples.addAll(samples);
+		copy.counter = counter;
+		copy.revision = revision;
+		return copy;
+	}
+
+	/**
+	 * Returns running statistics of logged samples. Statistics are built when
+	 * first requested or when more n-graphs are needed, then they are
+	 * maintained incrementally by addRow and removeRow. Method is synchronized,
+	 * so templates of one user can be compiled by concurrent evaluations.
+	 * 
+	 * @param graphs
+	 *            number of n-graphs which statistics have to hold
+	 * @return running statistics
+	 */
+	protected synchronized SampleStatistics getStatistics(int graphs) {
+		if (statistics == null || statistics.getGraphs() < graphs) {
+			statistics = new SampleStatistics(graphs);
+			for (KeystrokeSample row : samples) {
+				statistics.add(row);
+			}
+		}
+
+		return statistics;
 	}
 
 	/**
@@ -113,136 +213,311 @@ public class UserModel {
 	}
 
 	/**
-	 * Converts user data to JSON string.
+	 * Converts user data to binary template. Template starts with header of
+	 * magic number and format version followed by user data and samples
+	 * written by SampleCodec.
 	 * 
-	 * @return JSON string
+	 * @return binary template
 	 */
-	protected String saveTemplateToString() {
-		JSONObject json = new JSONObject();
+	protected byte[] saveTemplateToBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
 
 		try {
-			json.put("username", username);
-			json.put("password", password);
-			json.put("counter", counter);
-			json.put("holdCount", templateHoldCount);
-			json.put("samplesCount", loggedKeys.size());
-
-			JSONArray jArray = new JSONArray();
-			for (List<LoggedKey> row : loggedKeys) {
-				JSONObject jSample = new JSONObject();
-
-				JSONArray flyingTimes = new JSONArray();
-				JSONArray errors = new JSONArray();
-				JSONArray substitutions = new JSONArray();
-				JSONArray orientations = new JSONArray();
-				JSONArray pressures = new JSONArray();
-				JSONArray xAxises = new JSONArray();
-				JSONArray yAxises = new JSONArray();
-				JSONArray zAxises = new JSONArray();
-				JSONArray accXs = new JSONArray();
-				JSONArray accYs = new JSONArray();
-				JSONArray accZs = new JSONArray();
-
-				for (LoggedKey key : row) {
-					flyingTimes.put(key.getFlyingTime());
-					errors.put(key.getError());
-					substitutions.put(key.getLongPress());
-					orientations.put(key.getOrientation());
-					pressures.put(key.getPressure());
-					xAxises.put(key.getAxisX());
-					yAxises.put(key.getAxisY());
-					zAxises.put(key.getAxisZ());
-					accXs.put(key.getAccX());
-					accYs.put(key.getAccY());
-					accZs.put(key.getAccZ());
-				}
-				jSample.put("flyingTimes", flyingTimes);
-				jSample.put("errors", errors);
-				jSample.put("substitutions", substitutions);
-				jSample.put("orientations", orientations);
-				jSample.put("pressures", pressures);
+			out.writeInt(MAGIC);
+			out.writeByte(FORMAT_VERSION);
+			out.writeUTF(username);
+			out.writeUTF(password);
+			SampleCodec.writeVarLong(out, counter);
+			SampleCodec.writeVarLong(out, templateHoldCount);
+			SampleCodec.writeVarLong(out, revision);
+			SampleCodec.writeVarLong(out, samples.size());
+
+			for (KeystrokeSample row : samples) {
+				SampleCodec.writeSample(out, row);
+			}
 
-				jSample.put("xAxises", xAxises);
-				jSample.put("yAxises", yAxises);
-				jSample.put("zAxises", zAxises);
+			out.flush();
+		} catch (IOException e) {
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+		}
 
-				jSample.put("accXs", accXs);
-				jSample.put("accYs", accYs);
-				jSample.put("accZs", accZs);
+		return bytes.toByteArray();
+	}
 
-				jArray.put(jSample);
-			}
+	/**
+	 * Checks if data starts with header of binary template.
+	 * 
+	 * @param data
+	 *            content of template file
+	 * @return true if data are binary template, false if JSON template
+	 */
+	protected static boolean isBinaryTemplate(byte[] data) {
+		return data.length >= 4
+				&& ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16
+						| (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) == MAGIC;
+	}
+
+	/**
+	 * Load user's template from binary or JSON data. Format is detected from
+	 * header, so templates saved in JSON are still readable.
+	 * 
+	 * @param data
+	 *            content of template file
+	 * @param password
+	 *            encrypted password with sha256
+	 * @return true on success, false when data are wrong
+	 * @throws InvalidLoginException
+	 *             raises when password mismatch from template password
+	 */
+	protected boolean loadTemplate(byte[] data, String password)
+			throws InvalidLoginException {
+		return loadTemplate(new ByteArrayInputStream(data), password,
+				ALL_CHANNELS);
+	}
 
-			json.put("samples", jArray);
+	/**
+	 * Load user's template directly from stream. Format is detected from
+	 * header. JSON template is read with streaming reader and sensor channels
+	 * which are not evaluated according to flag are skipped, so template
+	 * loaded without all channels must not be saved again.
+	 * 
+	 * @param in
+	 *            stream with content of template file
+	 * @param password
+	 *            encrypted password with sha256
+	 * @param flag
+	 *            evaluation flag of channels to read
+	 * @return true on success, false when data are wrong
+	 * @throws InvalidLoginException
+	 *             raises when password mismatch from template password
+	 */
+	protected boolean loadTemplate(InputStream in, String password, int flag)
+			throws InvalidLoginException {
+		BufferedInputStream buffered = new BufferedInputStream(in);
+		byte[] header = new byte[4];
+
+		try {
+			buffered.mark(header.length);
+			int read = 0;
+			while (read < header.length) {
+				int count = buffered.read(header, read, header.length - read);
+				if (count < 0) {
+					break;
+				}
+				read += count;
+			}
+			buffered.reset();
 
-		} catch (JSONException e) {
+			if (read == header.length && isBinaryTemplate(header)) {
+				return readBinaryTemplate(new DataInputStream(buffered),
+						password);
+			}
+			return readJsonTemplate(new JsonReader(new InputStreamReader(
+					buffered, "UTF-8")), password, flag);
+		} catch (IOException e) {
 			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+			return false;
+		} catch (IllegalStateException e) {
+			/* Unexpected JSON token */
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+			return false;
+		} catch (NumberFormatException e) {
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Reads user's template in binary format.
+	 * 
+	 * @param in
+	 *            binary template
+	 * @param password
+	 *            encrypted password with sha256
+	 * @return true on success, false when data are wrong
+	 * @throws IOException
+	 *             raises when template could not be read
+	 * @throws InvalidLoginException
+	 *             raises when password mismatch from template password
+	 */
+	private boolean readBinaryTemplate(DataInputStream in, String password)
+			throws IOException, InvalidLoginException {
+		if (in.readInt() != MAGIC) {
+			return false;
+		}
+
+		int version = in.readUnsignedByte();
+		if (version != FORMAT_VERSION && version != NO_REVISION_VERSION
+				&& version != MILLIS_VERSION) {
+			Log.w(UserLoggerManager.LOGNAME, "Unsupported template version "
+					+ version);
+			return false;
+		}
+
+		username = in.readUTF();
+		this.password = in.readUTF();
+
+		if (!this.password.equals(password)) {
+			throw new InvalidLoginException();
+		}
+
+		counter = SampleCodec.readVarInt(in);
+		templateHoldCount = SampleCodec.readVarInt(in);
+		if (version == FORMAT_VERSION) {
+			revision = SampleCodec.readVarLong(in);
+		}
+
+		int samplesCount = SampleCodec.readVarInt(in);
+		for (int i = 0; i < samplesCount; i++) {
+			samples.add(SampleCodec.readSample(in,
+					(version == MILLIS_VERSION) ? SampleCodec.MILLIS
+							: SampleCodec.MICROS));
 		}
 
-		return json.toString();
+		return true;
 	}
 
 	/**
-	 * Load user's template from JSON data.
+	 * Reads user's template in JSON format. Keys can be in any order, password
+	 * is checked as soon as it is read.
 	 * 
-	 * @param template
-	 *            template JSON string
+	 * @param reader
+	 *            JSON stream
 	 * @param password
 	 *            encrypted password with sha256
+	 * @param flag
+	 *            evaluation flag of channels to read
 	 * @return true on success, false when data are wrong
+	 * @throws IOException
+	 *             raises when template could not be read
 	 * @throws InvalidLoginException
 	 *             raises when password mismatch from template password
 	 */
-	protected boolean loadTemplateFromString(String template, String password)
-			throws InvalidLoginException {
-		JSONObject json;
+	private boolean readJsonTemplate(JsonReader reader, String password,
+			int flag) throws IOException, InvalidLoginException {
+		List<KeystrokeSample> loaded = new ArrayList<KeystrokeSample>();
+		int samplesCount = -1;
+		boolean hasCounter = false;
+		boolean hasHoldCount = false;
 
 		try {
-			json = new JSONObject(template);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String key = reader.nextName();
+
+				if (key.equals("username")) {
+					username = reader.nextString();
+				} else if (key.equals("password")) {
+					this.password = reader.nextString();
+					if (!this.password.equals(password)) {
+						throw new InvalidLoginException();
+					}
+				} else if (key.equals("counter")) {
+					counter = reader.nextInt();
+					hasCounter = true;
+				} else if (key.equals("holdCount")) {
+					templateHoldCount = reader.nextInt();
+					hasHoldCount = true;
+				} else if (key.equals("samplesCount")) {
+					samplesCount = reader.nextInt();
+				} else if (key.equals("samples")) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						loaded.add(JsonSampleReader.readSample(reader, flag));
+					}
+					reader.endArray();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} finally {
+			reader.close();
+		}
 
-			username = json.getString("username");
-			this.password = json.getString("password");
+		if (username == null || this.password == null || !hasCounter
+				|| !hasHoldCount || samplesCount < 0
+				|| samplesCount > loaded.size()) {
+			Log.e(UserLoggerManager.LOGNAME, "Incomplete template");
+			return false;
+		}
 
-			if (!this.password.equals(password)) {
-				throw new InvalidLoginException();
-			}
+		samples.addAll(loaded.subList(0, samplesCount));
+		return true;
+	}
 
-			counter = json.getInt("counter");
-			templateHoldCount = json.getInt("holdCount");
-
-			JSONArray samples = json.getJSONArray("samples");
-
-			for (int i = 0; i < json.getInt("samplesCount"); i++) {
-				List<LoggedKey> rowValues = new ArrayList<LoggedKey>();
-				JSONObject sample = samples.getJSONObject(i);
-
-				JSONArray flyingTimes = sample.getJSONArray("flyingTimes");
-				JSONArray errors = sample.getJSONArray("errors");
-				JSONArray substitutions = sample.getJSONArray("substitutions");
-				JSONArray orientations = sample.getJSONArray("orientations");
-				JSONArray pressures = sample.getJSONArray("pressures");
-				JSONArray xAxises = sample.getJSONArray("xAxises");
-				JSONArray yAxises = sample.getJSONArray("yAxises");
-				JSONArray zAxises = sample.getJSONArray("zAxises");
-				JSONArray accXs = sample.getJSONArray("accXs");
-				JSONArray accYs = sample.getJSONArray("accYs");
-				JSONArray accZs = sample.getJSONArray("accZs");
-
-				for (int j = 0; j < flyingTimes.length(); j++) {
-					rowValues.add(new LoggedKey(flyingTimes.getLong(j),
-							substitutions.getBoolean(j), errors.getBoolean(j),
-							orientations.getInt(j), pressures.getDouble(j),
-							xAxises.getDouble(j), yAxises.getDouble(j), zAxises
-									.getDouble(j), accXs.getDouble(j), accYs
-									.getDouble(j), accZs.getDouble(j)));
+	/**
+	 * Reads encrypted password stored in binary or JSON template.
+	 * 
+	 * @param data
+	 *            content of template file
+	 * @return encrypted password or null if data are not user's template
+	 */
+	protected static String readPassword(byte[] data) {
+		try {
+			if (!isBinaryTemplate(data)) {
+				JsonReader reader = new JsonReader(new InputStreamReader(
+						new ByteArrayInputStream(data), "UTF-8"));
+				try {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if (reader.nextName().equals("password")) {
+							return reader.nextString();
+						}
+						reader.skipValue();
+					}
+					return null;
+				} finally {
+					reader.close();
 				}
-				loggedKeys.add(rowValues);
 			}
-		} catch (JSONException e) {
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+					data));
+			in.readInt();
+			int version = in.readUnsignedByte();
+			if (version != FORMAT_VERSION && version != NO_REVISION_VERSION
+					&& version != MILLIS_VERSION) {
+				return null;
+			}
+			in.readUTF();
+			return in.readUTF();
+		} catch (IOException e) {
+			return null;
+		} catch (IllegalStateException e) {
+			/* Not correct file */
+			return null;
+		}
+	}
+
+	/**
+	 * Load user's template from JSON data.
+	 * 
+	 * @param template
+	 *            template JSON string
+	 * @param password
+	 *            encrypted password with sha256
+	 * @return true on success, false when data are wrong
+	 * @throws InvalidLoginException
+	 *             raises when password mismatch from template password
+	 */
+	protected boolean loadTemplateFromString(String template, String password)
+			throws InvalidLoginException {
+		try {
+			return readJsonTemplate(new JsonReader(new StringReader(template)),
+					password, ALL_CHANNELS);
+		} catch (IOException e) {
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+			return false;
+		} catch (IllegalStateException e) {
+			/* Unexpected JSON token */
+			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
+			return false;
+		} catch (NumberFormatException e) {
 			Log.e(UserLoggerManager.LOGNAME, e.getMessage(), e);
 			return false;
 		}
-		return true;
 	}
 	
 	/**
@@ -252,8 +527,11 @@ public class UserModel {
 	 */
 	protected boolean checkOrientationLogging(){
 		double sum = 0;
-		for (LoggedKey key : getLoggedKeys().get(0)){
-			sum += key.getAxisX() + key.getAxisY() + key.getAxisZ();
+		KeystrokeSample row = getSamples().get(0);
+		for (int i = 0; i < row.size(); i++){
+			sum += row.getValue(KeystrokeSample.ORIENTATION_X, i)
+					+ row.getValue(KeystrokeSample.ORIENTATION_Y, i)
+					+ row.getValue(KeystrokeSample.ORIENTATION_Z, i);
 		}
 		
 		return (sum != 0.0) ? true : false;
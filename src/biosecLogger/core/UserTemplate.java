@@ -1,6 +1,5 @@
 package biosecLogger.core;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -20,33 +19,33 @@ public class UserTemplate {
 
 	private UserModel user;
 
-	private List<List<Double>> flyingTimes;
-	private List<Double> avgFlyingTimes;
-	private List<Double> flyingTimesDeviation;
+	private FeatureMatrix flyingTimes;
+	private double[] avgFlyingTimes;
+	private double[] flyingTimesDeviation;
 
-	private List<List<Double>> accXs;
-	private List<Double> avgAccXs;
-	private List<Double> deviationAccXs;
+	private FeatureMatrix accXs;
+	private double[] avgAccXs;
+	private double[] deviationAccXs;
 
-	private List<List<Double>> accYs;
-	private List<Double> avgAccYs;
-	private List<Double> deviationAccYs;
+	private FeatureMatrix accYs;
+	private double[] avgAccYs;
+	private double[] deviationAccYs;
 
-	private List<List<Double>> accZs;
-	private List<Double> avgAccZs;
-	private List<Double> deviationAccZs;
+	private FeatureMatrix accZs;
+	private double[] avgAccZs;
+	private double[] deviationAccZs;
 
-	private List<List<Double>> xAxises;
-	private List<Double> avgXAxises;
-	private List<Double> deviationXAxises;
+	private FeatureMatrix xAxises;
+	private double[] avgXAxises;
+	private double[] deviationXAxises;
 
-	private List<List<Double>> yAxises;
-	private List<Double> avgYAxises;
-	private List<Double> deviationYAxises;
+	private FeatureMatrix yAxises;
+	private double[] avgYAxises;
+	private double[] deviationYAxises;
 
-	private List<List<Double>> zAxises;
-	private List<Double> avgZAxises;
-	private List<Double> deviationZAxises;
+	private FeatureMatrix zAxises;
+	private double[] avgZAxises;
+	private double[] deviationZAxises;
 
 	private double errorRate;
 	private double longPressRate;
@@ -83,19 +82,19 @@ public class UserTemplate {
 		passLength = getPasswordLength();
 		
 		if ((flag & OptionsManager.FLYINGTIMES) == OptionsManager.FLYINGTIMES){
-			flyingTimes = extractFlyingTimes();
+			flyingTimes = extractChannel(KeystrokeSample.FLYINGTIMES);
 		}
 				
 		if ((flag & OptionsManager.ACCELERANCE) == OptionsManager.ACCELERANCE){
-			accXs = extractSensors(OptionsManager.ACCELERANCE, X_AXIS);
-			accYs = extractSensors(OptionsManager.ACCELERANCE, Y_AXIS);
-			accZs = extractSensors(OptionsManager.ACCELERANCE, Z_AXIS);
+			accXs = extractChannel(KeystrokeSample.ACCELERANCE_X);
+			accYs = extractChannel(KeystrokeSample.ACCELERANCE_Y);
+			accZs = extractChannel(KeystrokeSample.ACCELERANCE_Z);
 		}
 		
 		if ((flag & OptionsManager.ORIENTATION) == OptionsManager.ORIENTATION){
-			xAxises = extractSensors(OptionsManager.ORIENTATION, X_AXIS);
-			yAxises = extractSensors(OptionsManager.ORIENTATION, Y_AXIS);
-			zAxises = extractSensors(OptionsManager.ORIENTATION, Z_AXIS);
+			xAxises = extractChannel(KeystrokeSample.ORIENTATION_X);
+			yAxises = extractChannel(KeystrokeSample.ORIENTATION_Y);
+			zAxises = extractChannel(KeystrokeSample.ORIENTATION_Z);
 		}
 		
 		if ((flag & OptionsManager.ERRORRATE) == OptionsManager.ERRORRATE){
@@ -117,9 +116,9 @@ public class UserTemplate {
 	 * @return	length of a password
 	 */
 	private int getPasswordLength(){
-		int[] sizes = new int[user.getLoggedKeys().size()];
+		int[] sizes = new int[user.getSamples().size()];
 		int i = 0;
-		for (List<LoggedKey> row : user.getLoggedKeys()){
+		for (KeystrokeSample row : user.getSamples()){
 			sizes[i] = row.size();
 			i++;
 		}
@@ -132,40 +131,47 @@ public class UserTemplate {
 	 * Computes averages and deviations for extracted metrics.
 	 */
 	private void computeAveragesWithDeviations(){
-		List<List<Double>> result;
+		double[][] result;
 		
 		if (flyingTimes != null){
-			result = computeClearAverageWithDeviation(flyingTimes, null);
-			avgFlyingTimes = result.get(0);
-			flyingTimesDeviation = result.get(1);
+			result = computeClearAverageWithDeviation(
+					KeystrokeSample.FLYINGTIMES, flyingTimes);
+			avgFlyingTimes = result[0];
+			flyingTimesDeviation = result[1];
 		}
 		
 		if (accXs != null) {
-			result = computeClearAverageWithDeviation(accXs, null);
-			avgAccXs = result.get(0);
-			deviationAccXs = result.get(1);
-
-			result = computeClearAverageWithDeviation(accYs, null);
-			avgAccYs = result.get(0);
-			deviationAccYs = result.get(1);
-
-			result = computeClearAverageWithDeviation(accZs, null);
-			avgAccZs = result.get(0);
-			deviationAccZs = result.get(1);
+			result = computeClearAverageWithDeviation(
+					KeystrokeSample.ACCELERANCE_X, accXs);
+			avgAccXs = result[0];
+			deviationAccXs = result[1];
+
+			result = computeClearAverageWithDeviation(
+					KeystrokeSample.ACCELERANCE_Y, accYs);
+			avgAccYs = result[0];
+			deviationAccYs = result[1];
+
+			result = computeClearAverageWithDeviation(
+					KeystrokeSample.ACCELERANCE_Z, accZs);
+			avgAccZs = result[0];
+			deviationAccZs = result[1];
 		}
 
 		if (xAxises != null) {
-			result = computeClearAverageWithDeviation(xAxises, null);
-			avgXAxises = result.get(0);
-			deviationXAxises = result.get(1);
-
-			result = computeClearAverageWithDeviation(yAxises, null);
-			avgYAxises = result.get(0);
-			deviationYAxises = result.get(1);
-
-			result = computeClearAverageWithDeviation(zAxises, null);
-			avgZAxises = result.get(0);
-			deviationZAxises = result.get(1);
+			result = computeClearAverageWithDeviation(
+					KeystrokeSample.ORIENTATION_X, xAxises);
+			avgXAxises = result[0];
+			deviationXAxises = result[1];
+
+			result = computeClearAverageWithDeviation(
+					KeystrokeSample.ORIENTATION_Y, yAxises);
+			avgYAxises = result[0];
+			deviationYAxises = result[1];
+
+			result = computeClearAverageWithDeviation(
+					KeystrokeSample.ORIENTATION_Z, zAxises);
+			avgZAxises = result[0];
+			deviationZAxises = result[1];
 		}
 	}
 
@@ -175,18 +181,14 @@ public class UserTemplate {
 	 * @return extracted error rate
 	 */
 	private double extractErrors() {
-		List<List<LoggedKey>> loggedKeys = user.getLoggedKeys();
+		List<KeystrokeSample> samples = user.getSamples();
 		double errors = 0;
 
-		for (List<LoggedKey> row : loggedKeys) {
-			for (LoggedKey key : row) {
-				if (key.getError() == true) {
-					errors += 1;
-				}
-			}
+		for (KeystrokeSample row : samples) {
+			errors += row.getErrorCount();
 		}
 
-		return errors /= loggedKeys.size();
+		return errors /= samples.size();
 	}
 
 	/**
@@ -195,323 +197,80 @@ public class UserTemplate {
 	 * @return extracted long press rate
 	 */
 	private double extractLongPresses() {
-		List<List<LoggedKey>> loggedKeys = user.getLoggedKeys();
+		List<KeystrokeSample> samples = user.getSamples();
 		double substitutions = 0;
 
-		for (List<LoggedKey> row : loggedKeys) {
-			for (LoggedKey key : row) {
-				if (key.getLongPress() == true) {
-					substitutions += 1;
-				}
-			}
+		for (KeystrokeSample row : samples) {
+			substitutions += row.getLongPressCount();
 		}
 
-		return substitutions /= loggedKeys.size();
+		return substitutions /= samples.size();
 	}
 
 	/**
-	 * Extracts flying times data from logged keys.
+	 * Extracts channel data from biometric samples. Each sample row is copied
+	 * directly from channel column.
 	 * 
-	 * @return two-dimensional flying times data.
+	 * @param channel
+	 *            channel constant
+	 * @return two-dimensional channel data
 	 */
-	private List<List<Double>> extractFlyingTimes() {
-		List<List<Double>> flyingTimes = new ArrayList<List<Double>>();
-		
-		for (List<LoggedKey> row : user.getLoggedKeys()) {
-			List<Double> timeRow = new ArrayList<Double>();
-			for (LoggedKey key : row) {
-				timeRow.add((double) key.getFlyingTime());
-			}
-			flyingTimes.add(timeRow.subList(0, passLength));
-		}
-
-		return flyingTimes;
-	}
+	private FeatureMatrix extractChannel(int channel) {
+		List<KeystrokeSample> samples = user.getSamples();
+		FeatureMatrix values = new FeatureMatrix(samples.size(), passLength);
 
-	/**
-	 * Extracts sensor data from logged keys.
-	 * 
-	 * @param mode
-	 *            sensor to extract (OptionsManager.ACCELERANCE or
-	 *            OptionsManager.ORIENTATION)
-	 * @param axis
-	 *            axis to extract (X_AXIS, Y_AXIS, Z_AXIS)
-	 * @return extracted sensor data for specific sensor and specific axis
-	 */
-	private List<List<Double>> extractSensors(int mode, int axis) {
-		List<List<Double>> values = new ArrayList<List<Double>>();
-
-		for (List<LoggedKey> row : user.getLoggedKeys()) {
-			List<Double> newRow = new ArrayList<Double>();
-			for (LoggedKey key : row) {
-				switch (mode) {
-				case OptionsManager.ACCELERANCE:
-					switch (axis) {
-					case X_AXIS:
-						newRow.add(key.getAccX());
-						break;
-					case Y_AXIS:
-						newRow.add(key.getAccY());
-						break;
-					case Z_AXIS:
-						newRow.add(key.getAccZ());
-						break;
-					}
-					break;
-
-				case OptionsManager.ORIENTATION:
-					switch (axis) {
-					case X_AXIS:
-						newRow.add(key.getAxisX());
-						break;
-					case Y_AXIS:
-						newRow.add(key.getAxisY());
-						break;
-					case Z_AXIS:
-						newRow.add(key.getAxisZ());
-						break;
-					}
-					break;
-				}
-			}
-			values.add(newRow.subList(0, passLength));
+		for (int r = 0; r < samples.size(); r++) {
+			values.setRow(r, samples.get(r).getChannel(channel));
 		}
 
 		return values;
 	}
 
 	/**
-	 * Converts input values to n-graphs values.
+	 * Returns mean vector with standard deviation vector of uncorrected
+	 * n-graph values. Values are taken from user's running statistics.
 	 * 
-	 * @param values
-	 *            input values
+	 * @param channel
+	 *            channel constant
 	 * @param graphs
-	 *            number of graphs
-	 * @return n-graph values
+	 *            number of n-graphs
+	 * @return array with average vector and standard deviation vector
 	 */
-	private List<List<Double>> convertToNGraphs(List<List<Double>> values,
+	private double[][] getRawAverageWithDeviation(int channel,
 			int graphs) {
-		List<List<Double>> newValues = new ArrayList<List<Double>>();
-
-		for (List<Double> row : values) {
-			List<Double> newRow = new ArrayList<Double>();
-			for (int i = 0; i < row.size() + 1 - graphs; i++) {
-				double value = 0;
-				for (int j = 0; j < graphs; j++) {
-					value += row.get(i + j);
-				}
-				newRow.add(value);
-			}
-			newValues.add(newRow);
-		}
-
-		return newValues;
-	}
-
-	/**
-	 * Compute average value for specific column in two-dimensional list.
-	 * 
-	 * @param col
-	 *            column to compute
-	 * @param values
-	 *            input values
-	 * @param testRow
-	 *            row to skip - if null, no row will be skipped
-	 * @return computed average value
-	 */
-	private static double computeAverageValue(int col, List<List<Double>> values,
-			List<Double> testRow) {
-		Double value;
-		double average = 0;
-		int size = 0;
-
-		for (int i = 0; i < values.size(); i++) {
-			if (values.get(i) != testRow) {
-				value = values.get(i).get(col);
-				if (value != null) {
-					average += values.get(i).get(col);
-					size++;
-				}
-			}
-		}
-
-		if (testRow != null) {
-			size -= 1;
-		}
-
-		return average / size;
-	}
-
-	/**
-	 * Compute standard deviation value for specific column in two-dimensional
-	 * list.
-	 * 
-	 * @param col
-	 *            column to compute
-	 * @param average
-	 *            average value
-	 * @param values
-	 *            input values
-	 * @param testRow
-	 *            row to skip - if null, no row will be skipped
-	 * @return computed standard deviation
-	 */
-	private static double computeDeviation(int col, double average,
-			List<List<Double>> values, List<Double> testRow) {
-		Double value;
-		double deviation = 0;
-		int size = 0;
-
-		for (int i = 0; i < values.size(); i++) {
-			if (values.get(i) != testRow) {
-				value = values.get(i).get(col);
-				if (value != null) {
-					deviation += Math.pow(values.get(i).get(col) - average, 2);
-					size++;
-				}
-			}
-		}
-
-		if (testRow != null) {
-			size -= 1;
-		}
-
-		return Math.sqrt(deviation / size);
-	}
-
-	/**
-	 * Converts several vectors into mean vector with standard deviation vector.
-	 * 
-	 * @param values
-	 *            input values
-	 * @param testRow
-	 *            row to skip - if null, no row will be skipped
-	 * @return list with vectors of average values and standard deviation values
-	 */
-	protected static List<List<Double>> computeAverageWithDeviation(
-			List<List<Double>> values, List<Double> testRow) {
-		List<List<Double>> result = new ArrayList<List<Double>>();
-		List<Double> average = new ArrayList<Double>();
-		List<Double> deviation = new ArrayList<Double>();
-
-		for (int i = 0; i < values.get(0).size(); i++) {
-			double averageKey = computeAverageValue(i, values, testRow);
-			average.add(averageKey);
-			deviation.add(computeDeviation(i, averageKey, values, testRow));
-		}
-
-		result.add(average);
-		result.add(deviation);
-
-		return result;
+		return user.getStatistics(graphs).getAverageWithDeviation(channel,
+				graphs, passLength + 1 - graphs);
 	}
 
 	/**
 	 * Converts several vectors into mean vector with standard deviation vector.
-	 * Additionally Grubb's correction is performed.
+	 * Additionally Grubb's correction is performed. Only uncorrected statistics
+	 * are taken from running statistics, outliers depend on actual averages of
+	 * all samples, so correction and corrected statistics still cost O(n * m).
 	 * 
+	 * @param channel
+	 *            channel constant of values
 	 * @param values
 	 *            input values
-	 * @param testRow
-	 *            row to skip - if null, no row will be skipped
-	 * @return list with vectors of average values and standard deviation values
+	 * @return array with average vector and standard deviation vector
 	 */
-	private List<List<Double>> computeClearAverageWithDeviation(
-			List<List<Double>> values, List<Double> testRow) {
-		List<List<Double>> result = computeAverageWithDeviation(values, testRow);
-		values = GrubbsTest.grubbsOutlierCorrection(values, result.get(0),
-				result.get(1));
-		return computeAverageWithDeviation(values, testRow);
-	}
-
-	/**
-	 * Computes individual user's threshold for specific distance vector based
-	 * algorithm.
-	 * 
-	 * @param values
-	 *            input values
-	 * @param algorithm
-	 *            distance vector algorithm (OptionsManager.MANHATTAN or
-	 *            OptionsManager.EUCLIDEAN)
-	 * @return threshold value
-	 */
-	private double computeThreshold(List<List<Double>> values, int algorithm) {
-		List<Double> thresholds = new ArrayList<Double>();
-
-		List<List<Double>> result = computeAverageWithDeviation(values, null);
-		List<Double> averageValues;
-		List<Double> deviations;
-		double score;
-
-		values = GrubbsTest.grubbsOutlierCorrection(values, result.get(0),
-				result.get(1));
-
-		for (List<Double> testRow : values) {
-			if (testRow.indexOf(null) != -1) {
-				continue;
-			}
-
-			result = computeAverageWithDeviation(values, testRow);
-			averageValues = result.get(0);
-			deviations = result.get(1);
-
-			score = 0;
-			for (int i = 0; i < testRow.size(); i++) {
-				if (deviations.get(i) == 0) {
-					deviations.set(i, (double) 1);
-				}
-
-				switch (algorithm) {
-				case OptionsManager.MANHATTAN:
-					score += Math.abs((testRow.get(i) - averageValues.get(i)));
-					break;
-				case OptionsManager.EUCLIDEAN:
-					score += Math.pow(testRow.get(i) - averageValues.get(i), 2);
-					break;
-				/*
-				 * case UserLoggerManager.MAHALANOBIS: score +=
-				 * Math.pow((testRow.get(i) - averageValues.get(i)) /
-				 * deviations.get(i), 2); break;
-				 */
-				}
-			}
-
-			switch (algorithm) {
-			case OptionsManager.EUCLIDEAN:
-				score = Math.sqrt(score);
-				break;
-			}
-
-			thresholds.add(score);
-		}
-
-		double threshold = 0;
-		for (int i = 0; i < thresholds.size(); i++) {
-			threshold += thresholds.get(i);
-		}
-		threshold /= thresholds.size();
-
-		return threshold;
+	private double[][] computeClearAverageWithDeviation(int channel,
+			FeatureMatrix values) {
+		double[][] result = getRawAverageWithDeviation(channel, 1);
+		values = GrubbsTest.grubbsOutlierCorrection(values, result[0],
+				result[1]);
+		return values.computeAverageWithDeviation();
 	}
 
 	/*************************************************************************/
 
 	/**
-	 * Returns individual threshold for input values and distance vector based
-	 * algorithm.
+	 * Returns length of a password used in template.
 	 * 
-	 * @param values
-	 *            input values
-	 * @param graphs
-	 *            number of n-graphs
-	 * @param algorithm
-	 *            distance vector algorithm (OptionsManager.MANHATTAN or
-	 *            OptionsManager.EUCLIDEAN)
-	 * @return computed threshold
+	 * @return length of a password
 	 */
-	protected double getThreshold(List<List<Double>> values, int graphs,
-			int algorithm) {
-		return computeThreshold(convertToNGraphs(values, graphs), algorithm);
+	protected int getPassLength() {
+		return passLength;
 	}
 
 	/**
@@ -519,7 +278,7 @@ public class UserTemplate {
 	 * 
 	 * @return extracted flying times
 	 */
-	protected List<List<Double>> getFlyingTimes() {
+	protected FeatureMatrix getFlyingTimes() {
 		return flyingTimes;
 	}
 
@@ -528,7 +287,7 @@ public class UserTemplate {
 	 * 
 	 * @return average flying times
 	 */
-	protected List<Double> getAverageFlyingTimes() {
+	protected double[] getAverageFlyingTimes() {
 		return avgFlyingTimes;
 	}
 
@@ -537,7 +296,7 @@ public class UserTemplate {
 	 * 
 	 * @return flying times deviations
 	 */
-	protected List<Double> getFlyingTimesDeviation() {
+	protected double[] getFlyingTimesDeviation() {
 		return flyingTimesDeviation;
 	}
 
@@ -548,14 +307,14 @@ public class UserTemplate {
 	 *            axis to return (X_AXIS, Y_AXIS, Z_AXIS)
 	 * @return extracted flying times
 	 */
-	protected List<List<Double>> getAccs(int axis) {
+	protected FeatureMatrix getAccs(int axis) {
 		switch (axis) {
 		case X_AXIS:
 			return accXs;
 		case Y_AXIS:
-			return accXs;
+			return accYs;
 		case Z_AXIS:
-			return accXs;
+			return accZs;
 		default:
 			return null;
 		}
@@ -568,7 +327,7 @@ public class UserTemplate {
 	 *            axis to return (X_AXIS, Y_AXIS, Z_AXIS)
 	 * @return average acceleration vector
 	 */
-	protected List<Double> getAvgAccs(int axis) {
+	protected double[] getAvgAccs(int axis) {
 		switch (axis) {
 		case X_AXIS:
 			return avgAccXs;
@@ -588,7 +347,7 @@ public class UserTemplate {
 	 *            axis to return (X_AXIS, Y_AXIS, Z_AXIS)
 	 * @return acceleration deviations
 	 */
-	protected List<Double> getDeviationAccs(int axis) {
+	protected double[] getDeviationAccs(int axis) {
 		switch (axis) {
 		case X_AXIS:
 			return deviationAccXs;
@@ -608,7 +367,7 @@ public class UserTemplate {
 	 *            axis to return (X_AXIS, Y_AXIS, Z_AXIS)
 	 * @return extracted device orientation vectors
 	 */
-	protected List<List<Double>> getAxises(int axis) {
+	protected FeatureMatrix getAxises(int axis) {
 		switch (axis) {
 		case X_AXIS:
 			return xAxises;
@@ -628,7 +387,7 @@ public class UserTemplate {
 	 *            axis to return (X_AXIS, Y_AXIS, Z_AXIS)
 	 * @return average device orientation vector
 	 */
-	protected List<Double> getAvgAxises(int axis) {
+	protected double[] getAvgAxises(int axis) {
 		switch (axis) {
 		case X_AXIS:
 			return avgXAxises;
@@ -648,7 +407,7 @@ public class UserTemplate {
 	 *            axis to return (X_AXIS, Y_AXIS, Z_AXIS)
 	 * @return standard deviations vector
 	 */
-	protected List<Double> getDeviationAxises(int axis) {
+	protected double[] getDeviationAxises(int axis) {
 		switch (axis) {
 		case X_AXIS:
 			return deviationXAxises;
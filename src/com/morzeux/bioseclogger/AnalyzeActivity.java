@@ -261,6 +261,19 @@ public class AnalyzeActivity extends Activity {
 	    startActivity(intent);
 	}
 
+	/**
+	 * Shows error curve of last results. Curve contains FAR and FRR for every
+	 * sensitivity.
+	 */
+	public void showErrorCurve() {
+		Intent intent = new ChartBuilder(this).buildErrorCurveChart(
+				getResources().getString(R.string.titleCurve),
+				getResources().getString(R.string.xLabelCurve),
+				getResources().getString(R.string.yLabelCurve),
+				analyser.getResults());
+		startActivity(intent);
+	}
+
 	/**
 	 * Opens download popup.
 	 * 
@@ -315,6 +328,7 @@ public class AnalyzeActivity extends Activity {
 	public boolean onCreateOptionsMenu(Menu menu) {
 		getMenuInflater().inflate(R.menu.main, menu);
 		menu.findItem(R.id.saveResultsButton).setVisible(true);
+		menu.findItem(R.id.errorCurveButton).setVisible(true);
 		return true;
 	}
 
@@ -324,6 +338,10 @@ public class AnalyzeActivity extends Activity {
 
 		if (item.getItemId() == R.id.saveResultsButton) {
 			saveResults();
+		} else if (item.getItemId() == R.id.errorCurveButton) {
+			if (analyser.hasResults()) {
+				showErrorCurve();
+			}
 		} else {
 			intent = ActionMenu.onOptionsItemSelected(this, item.getItemId());
 		}
@@ -1,7 +1,5 @@
 package com.morzeux.bioseclogger;
 
-import java.io.IOException;
-
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
@@ -19,6 +17,7 @@ import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.TextView;
 import biosecLogger.core.OptionsManager;
+import biosecLogger.core.SubmitCallback;
 import biosecLogger.core.UserLoggerManager;
 import biosecLogger.exceptions.ExistingUserException;
 import biosecLogger.exceptions.InvalidLoginException;
@@ -145,49 +144,74 @@ public class CreateTemplateActivity extends Activity {
 	}
 
 	/**
-	 * Submits user's input as biometric sample. Creates, updates and completes
-	 * template.
+	 * Returns callback which shows result of submitted sample.
 	 * 
-	 * @param view
-	 *            source view
+	 * @return SubmitCallback
 	 */
-	public final void onClick(View view) {
+	private SubmitCallback getSubmitCallback() {
+		return new SubmitCallback() {
+			@Override
+			public void onSubmitted(int check) {
+				if (isFinishing()) {
+					return;
+				}
 
-		if (!oManager.checkExternalSaving()
-				|| userManager.checkExternalStorage() == UserLoggerManager.WRITABLE) {
-			if (correctInput() == true) {
-				try {
-					int check = userManager.submitSample(
-							getString(usernameText), getString(passwordText));
-					if (check == UserLoggerManager.COMPLETED) {
-						new PopupBuilder(this, getResources().getString(
-								R.string.infoDialogTitle), getResources()
-								.getString(R.string.templateCompleteText),
-								getResources().getString(R.string.no))
-								.createExitingPopup();
-						imm.hideSoftInputFromWindow(
-								passwordText.getWindowToken(), 0);
-						return;
-					} else if (check == UserLoggerManager.CREATED
-							|| check == UserLoggerManager.UPDATED) {
-						setInfoText(getGoodSubmitText(), R.color.goodColor); // correct
-																				// submit
-					}
-				} catch (InvalidLoginException e) {
+				if (check == UserLoggerManager.COMPLETED) {
+					new PopupBuilder(CreateTemplateActivity.this,
+							getResources().getString(R.string.infoDialogTitle),
+							getResources().getString(
+									R.string.templateCompleteText),
+							getResources().getString(R.string.no))
+							.createExitingPopup();
+					imm.hideSoftInputFromWindow(passwordText.getWindowToken(),
+							0);
+				} else if (check == UserLoggerManager.CREATED
+						|| check == UserLoggerManager.UPDATED) {
+					setInfoText(getGoodSubmitText(), R.color.goodColor); // correct
+																			// submit
+				}
+			}
+
+			@Override
+			public void onFailed(Exception e) {
+				if (isFinishing()) {
+					return;
+				}
+
+				if (e instanceof InvalidLoginException) {
 					setInfoText(
 							getResources().getString(
 									R.string.wrongPasswordError),
 							R.color.badColor);
-				} catch (ExistingUserException e) {
+				} else if (e instanceof ExistingUserException) {
 					setInfoText(
 							getResources()
 									.getString(R.string.existingUserError),
 							R.color.badColor);
-				} catch (IOException e) {
+				} else {
 					setInfoText(getResources()
 							.getString(R.string.saveDataError),
 							R.color.badColor);
 				}
+			}
+		};
+	}
+
+	/**
+	 * Submits user's input as biometric sample. Creates, updates and completes
+	 * template. Sample is evaluated on background, result is shown by
+	 * callback.
+	 * 
+	 * @param view
+	 *            source view
+	 */
+	public final void onClick(View view) {
+
+		if (!oManager.checkExternalSaving()
+				|| userManager.checkExternalStorage() == UserLoggerManager.WRITABLE) {
+			if (correctInput() == true) {
+				userManager.submitSampleAsync(getString(usernameText),
+						getString(passwordText), getSubmitCallback());
 
 			} else {
 				setInfoText(
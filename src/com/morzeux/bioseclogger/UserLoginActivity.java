@@ -1,7 +1,5 @@
 package com.morzeux.bioseclogger;
 
-import java.io.IOException;
-
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Intent;
@@ -17,6 +15,7 @@ import android.view.View.OnKeyListener;
 import android.widget.EditText;
 import android.widget.TextView;
 import biosecLogger.core.OptionsManager;
+import biosecLogger.core.SubmitCallback;
 import biosecLogger.core.UserLoggerManager;
 import biosecLogger.exceptions.InvalidLoginException;
 import biosecLogger.exceptions.PatternMismatchException;
@@ -87,30 +86,57 @@ public class UserLoginActivity extends Activity {
 		return String.valueOf(text.getText());
 	}
 
+	/**
+	 * Returns callback which shows result of login.
+	 * 
+	 * @return SubmitCallback
+	 */
+	private SubmitCallback getLoginCallback() {
+		return new SubmitCallback() {
+			@Override
+			public void onSubmitted(int result) {
+				if (isFinishing()) {
+					return;
+				}
+
+				new PopupBuilder(UserLoginActivity.this, getResources()
+						.getString(R.string.infoDialogTitle), getResources()
+						.getString(R.string.loginSuccess), getResources()
+						.getString(R.string.closeButtonLabel))
+						.createExitingPopup();
+			}
+
+			@Override
+			public void onFailed(Exception e) {
+				if (isFinishing()) {
+					return;
+				}
+
+				if (e instanceof PatternMismatchException) {
+					setInfoText(
+							getResources().getString(R.string.patternMismatch),
+							R.color.badColor); // if bad user
+				} else if (e instanceof InvalidLoginException) {
+					setInfoText(
+							getResources().getString(
+									R.string.wrongPasswordError),
+							R.color.badColor); // if wrong password
+				} else {
+					setInfoText(
+							getResources().getString(R.string.openDataError),
+							R.color.badColor);
+				}
+			}
+		};
+	}
+
 	public final void onClick(View view) {
 
 		if (!oManager.checkExternalSaving()
 				|| userManager.checkExternalStorage() == UserLoggerManager.WRITABLE) {
 
-			try {
-				userManager.submitUser(getString(usernameText),
-						getString(passwordText));
-				new PopupBuilder(this, getResources().getString(
-						R.string.infoDialogTitle), getResources().getString(
-						R.string.loginSuccess), getResources().getString(
-						R.string.closeButtonLabel)).createExitingPopup();
-
-			} catch (PatternMismatchException e) {
-				setInfoText(getResources().getString(R.string.patternMismatch),
-						R.color.badColor); // if bad user
-			} catch (InvalidLoginException e) {
-				setInfoText(
-						getResources().getString(R.string.wrongPasswordError),
-						R.color.badColor); // if wrong password
-			} catch (IOException e) {
-				setInfoText(getResources().getString(R.string.openDataError),
-						R.color.badColor);
-			}
+			userManager.submitUserAsync(getString(usernameText),
+					getString(passwordText), getLoginCallback());
 
 		} else if (userManager.checkExternalStorage() == UserLoggerManager.READABLE) {
 			setInfoText(getResources().getString(R.string.readableSdCard),
@@ -84,6 +84,8 @@ public class SendSampleTask extends AsyncTask<String, Void, Boolean> {
 	@Override
 	protected Boolean doInBackground(String... params) {
 		try {
+			/* Exported templates must contain samples from journals */
+			UserLoggerManager.flushExternalTemplates();
 			String zFileName = Zipper.zip(act.getResources().getString(R.string.ATTACHMENT),
 					"results" + Zipper.getDate() + ".zip");
 			boolean emailSend = emailSender.sendEmail(alias, to, subject,
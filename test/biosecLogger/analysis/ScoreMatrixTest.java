@@ -0,0 +1,35 @@
+package biosecLogger.analysis;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests error curve of score matrix.
+ * 
+ * @author Stefan Smihla
+ * 
+ */
+public class ScoreMatrixTest extends TestCase {
+
+	public void testCurveWithUndefinedScores() {
+		ScoreMatrix matrix = new ScoreMatrix(2, 2, "phrase");
+		matrix.setRow(0, 0, new double[] { Double.NaN, 0.5 });
+		matrix.setRow(1, 1, new double[] { 0.2, Double.NaN });
+
+		double[] thresholds = matrix.getThresholds();
+		assertEquals(Double.NEGATIVE_INFINITY, thresholds[0], 0);
+		assertEquals(Double.POSITIVE_INFINITY,
+				thresholds[thresholds.length - 1], 0);
+		assertEquals(Double.NEGATIVE_INFINITY, matrix.getScore(0, 0), 0);
+		assertFalse(Double.isNaN(matrix.getEqualErrorRate()));
+	}
+
+	public void testEqualErrorRate() {
+		ScoreMatrix matrix = new ScoreMatrix(2, 2, "phrase");
+		matrix.setRow(0, 0, new double[] { 0.9, 0.1 });
+		matrix.setRow(1, 1, new double[] { 0.2, 0.8 });
+
+		assertEquals(0, matrix.getEqualErrorRate(), 1e-9);
+		assertEquals(0, matrix.getResult(0.5).getFar(), 1e-9);
+		assertEquals(0, matrix.getResult(0.5).getFrr(), 1e-9);
+	}
+}
@@ -0,0 +1,85 @@
+package biosecLogger.core;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests flying times below one millisecond with fake clock. Times must be
+ * measured exactly and kept when sample is saved and loaded again.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class KeyTimerTest extends TestCase {
+
+	/** Clock which moves only when test advances it */
+	private static class FakeClock implements TimeSource {
+		private long time = 1000000000L;
+
+		@Override
+		public long nanoTime() {
+			return time;
+		}
+
+		private void advance(long nanos) {
+			time += nanos;
+		}
+	}
+
+	private FakeClock clock;
+	private KeyTimer timer;
+
+	@Override
+	protected void setUp() {
+		clock = new FakeClock();
+		timer = new KeyTimer();
+		timer.setTimeSource(clock);
+	}
+
+	public void testSubMillisecondFlyingTimes() {
+		assertFalse(timer.isStarted());
+
+		timer.markKey();
+		assertTrue(timer.isStarted());
+
+		clock.advance(250000);
+		assertEquals(0.25, timer.getFlyingTime(false), 1e-12);
+		timer.markKey();
+
+		clock.advance(40000);
+		assertEquals(0.04, timer.getFlyingTime(false), 1e-12);
+
+		/* Long press is measured from key before substituted key */
+		assertEquals(0.29, timer.getFlyingTime(true), 1e-12);
+
+		timer.reset();
+		assertFalse(timer.isStarted());
+	}
+
+	public void testFlyingTimesSurviveTemplate() throws Exception {
+		double[] flyingTimes = new double[4];
+
+		timer.markKey();
+		for (int i = 1; i < flyingTimes.length; i++) {
+			clock.advance(i * 125000);
+			flyingTimes[i] = timer.getFlyingTime(false);
+			timer.markKey();
+		}
+
+		KeystrokeSample sample = new KeystrokeSample();
+		for (double flyingTime : flyingTimes) {
+			sample.addKey(flyingTime, false, false, 0, 0, 0, 0, 0, 0, 0, 0);
+		}
+
+		UserModel user = new UserModel("user", "password", 10);
+		user.addRow(sample);
+
+		UserModel loaded = new UserModel(null, null, 10);
+		assertTrue(loaded.loadTemplate(user.saveTemplateToBytes(), "password"));
+
+		KeystrokeSample loadedSample = loaded.getSamples().get(0);
+		assertEquals(flyingTimes.length, loadedSample.size());
+		for (int i = 0; i < flyingTimes.length; i++) {
+			assertEquals(i * 0.125, loadedSample.getFlyingTime(i), 1e-9);
+		}
+	}
+}
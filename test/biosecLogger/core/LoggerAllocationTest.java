@@ -0,0 +1,182 @@
+package biosecLogger.core;
+
+import java.lang.management.ManagementFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that sensor path of logger does not allocate. Readings are added and
+ * interpolated many times after warm up and allocated bytes of thread are
+ * compared. Test needs HotSpot JVM, which counts allocated bytes per thread.
+ * Recompilation of methods may allocate few bytes once, so measuring is
+ * repeated until a round allocates nothing. Allocation per event would
+ * allocate in every round.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class LoggerAllocationTest extends TestCase {
+
+	private static final int WARMUP = 100000;
+	private static final int EVENTS = 1000000;
+	private static final int ROUNDS = 5;
+
+	/** Every tenth reading is followed by key */
+	private static final int KEY_EVERY = 10;
+
+	/** Sensor readings are 5 ms apart */
+	private static final long PERIOD = 5000000;
+
+	private com.sun.management.ThreadMXBean threads;
+	private long threadId;
+
+	private long now;
+	private final TimeSource clock = new TimeSource() {
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+	};
+
+	private final float[] accelerometer = new float[3];
+	private final float[] magnetometer = new float[3];
+
+	@Override
+	protected void setUp() {
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		threadId = Thread.currentThread().getId();
+		Logger.INSTANCE.setTimeSource(clock);
+	}
+
+	@Override
+	protected void tearDown() {
+		Logger.INSTANCE.setTimeSource(TimeSource.SYSTEM);
+	}
+
+	/**
+	 * Returns bytes allocated by test thread so far.
+	 *
+	 * @return allocated bytes
+	 */
+	private long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(threadId);
+	}
+
+	/**
+	 * Returns bytes allocated by measuring itself.
+	 *
+	 * @return allocated bytes
+	 */
+	private long measuringBytes() {
+		long start = allocatedBytes();
+		return allocatedBytes() - start;
+	}
+
+	/**
+	 * Adds readings of both sensors and interpolates state for every tenth
+	 * reading, as it is done for key.
+	 *
+	 * @param from
+	 *            index of first reading
+	 * @param count
+	 *            number of readings
+	 */
+	private void driveLogger(int from, int count) {
+		Logger logger = Logger.INSTANCE;
+
+		for (int i = from; i < from + count; i++) {
+			long timestamp = i * PERIOD;
+			now = timestamp + 1000;
+
+			accelerometer[0] = i % 7;
+			accelerometer[1] = 9.81f;
+			accelerometer[2] = -(i % 3);
+			magnetometer[0] = 20 + i % 5;
+			magnetometer[1] = -10;
+			magnetometer[2] = 40;
+
+			logger.addAccelerometerReading(timestamp, accelerometer);
+			logger.addMagnetometerReading(timestamp, magnetometer);
+
+			if (i % KEY_EVERY == 0) {
+				assertTrue(logger.interpolateSensors(now - PERIOD / 2));
+			}
+		}
+	}
+
+	/**
+	 * Adds readings to ring buffer and interpolates them.
+	 *
+	 * @param buffer
+	 *            ring buffer with three channels
+	 * @param from
+	 *            index of first reading
+	 * @param count
+	 *            number of readings
+	 */
+	private void driveBuffer(SensorRingBuffer buffer, int from, int count) {
+		float[] out = magnetometer;
+
+		for (int i = from; i < from + count; i++) {
+			accelerometer[0] = i;
+			buffer.add(i * PERIOD, accelerometer);
+			assertTrue(buffer.interpolate(i * PERIOD - PERIOD / 3, out));
+		}
+	}
+
+	public void testSensorPathDoesNotAllocate() {
+		driveLogger(0, WARMUP);
+
+		long allocated = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long overhead = measuringBytes();
+			long start = allocatedBytes();
+			driveLogger(WARMUP + round * EVENTS, EVENTS);
+			allocated = allocatedBytes() - start - overhead;
+
+			if (allocated == 0) {
+				break;
+			}
+		}
+
+		assertEquals("Allocated bytes", 0, allocated);
+	}
+
+	public void testRingBufferDoesNotAllocate() {
+		SensorRingBuffer buffer = new SensorRingBuffer(64, 3);
+		driveBuffer(buffer, 0, WARMUP);
+
+		long allocated = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long overhead = measuringBytes();
+			long start = allocatedBytes();
+			driveBuffer(buffer, WARMUP + round * EVENTS, EVENTS);
+			allocated = allocatedBytes() - start - overhead;
+
+			if (allocated == 0) {
+				break;
+			}
+		}
+
+		assertEquals("Allocated bytes", 0, allocated);
+	}
+
+	public void testInterpolation() {
+		SensorRingBuffer buffer = new SensorRingBuffer(4, 1);
+		float[] out = new float[1];
+
+		assertFalse(buffer.interpolate(0, out));
+
+		buffer.add(10, new float[] { 1 });
+		buffer.add(20, new float[] { 3 });
+		assertTrue(buffer.interpolate(15, out));
+		assertEquals(2, out[0], 1e-6);
+
+		/* Nearest reading is used outside of buffered readings */
+		assertTrue(buffer.interpolate(5, out));
+		assertEquals(1, out[0], 1e-6);
+		assertTrue(buffer.interpolate(25, out));
+		assertEquals(3, out[0], 1e-6);
+	}
+}
@@ -0,0 +1,161 @@
+package biosecLogger.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+/**
+ * Stress test of LoginEvaluator shared between threads. Every thread
+ * evaluates the same samples against the same compiled templates in different
+ * order and results must be identical to sequential evaluation.
+ * 
+ * @author Stefan Smihla
+ * 
+ */
+public class LoginEvaluatorStressTest extends TestCase {
+
+	private static final int USERS = 6;
+	private static final int SAMPLES = 20;
+	private static final int KEYS = 12;
+	private static final int TESTS = 60;
+
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 10;
+
+	private Random random;
+
+	@Override
+	protected void setUp() {
+		random = new Random(11);
+	}
+
+	/**
+	 * Creates sample of user with typing speed given by base.
+	 * 
+	 * @param base
+	 *            base flying time of user
+	 * @return biometric sample
+	 */
+	private KeystrokeSample createSample(double base) {
+		KeystrokeSample sample = new KeystrokeSample();
+
+		for (int i = 0; i < KEYS; i++) {
+			double flyingTime = (i == 0) ? 0 : base + i * 10
+					+ random.nextGaussian() * 20;
+			sample.addKey(flyingTime, random.nextInt(30) == 0,
+					random.nextInt(20) == 0, 0, 0, random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian(),
+					random.nextGaussian() + base / 100, random.nextGaussian(),
+					random.nextGaussian());
+		}
+
+		sample.trim();
+		return sample;
+	}
+
+	/**
+	 * Evaluates all samples against all templates from several threads with
+	 * single evaluator.
+	 * 
+	 * @param algorithm
+	 *            evaluation algorithm constant
+	 * @throws Exception
+	 *             raises when thread fails
+	 */
+	private void checkAlgorithm(int algorithm) throws Exception {
+		OptionsManager om = new OptionsManager();
+		om.setFlag(OptionsManager.FLYINGTIMES | OptionsManager.ACCELERANCE
+				| OptionsManager.ORIENTATION | OptionsManager.ERRORRATE);
+		om.setGraphs(3);
+		om.setEvaluationAlgorithm(algorithm);
+
+		final List<CompiledTemplate> templates = new ArrayList<CompiledTemplate>();
+		for (int u = 0; u < USERS; u++) {
+			UserModel user = new UserModel("user" + u, "password", 50);
+			for (int s = 0; s < SAMPLES; s++) {
+				user.addRow(createSample(100 + u * 15));
+			}
+			templates.add(new CompiledTemplate(user, om));
+		}
+
+		final List<KeystrokeSample> samples = new ArrayList<KeystrokeSample>();
+		for (int i = 0; i < TESTS; i++) {
+			samples.add(createSample(100 + (i % USERS) * 15));
+		}
+
+		final LoginEvaluator evaluator = new LoginEvaluator(om);
+		final int pairs = TESTS * USERS;
+		final double[] scores = new double[pairs];
+		final boolean[] passed = new boolean[pairs];
+
+		for (int p = 0; p < pairs; p++) {
+			CompiledTemplate ct = templates.get(p % USERS);
+			KeystrokeSample sample = samples.get(p / USERS);
+			scores[p] = evaluator.evaluate(ct, sample, false).getScore();
+			passed[p] = evaluator.checkPatter(ct, sample);
+		}
+
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t * pairs / THREADS;
+			futures.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int mismatches = 0;
+					start.await();
+
+					for (int i = 0; i < ROUNDS * pairs; i++) {
+						int p = (offset + i) % pairs;
+						CompiledTemplate ct = templates.get(p % USERS);
+						KeystrokeSample sample = samples.get(p / USERS);
+
+						Evaluation ev = evaluator.evaluate(ct, sample, false);
+						if (Double.compare(ev.getScore(), scores[p]) != 0
+								|| evaluator.checkPatter(ct, sample) != passed[p]) {
+							mismatches++;
+						}
+					}
+					return mismatches;
+				}
+			}));
+		}
+
+		start.countDown();
+		int mismatches = 0;
+		try {
+			for (Future<Integer> future : futures) {
+				mismatches += future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals("Mismatches of algorithm " + algorithm, 0, mismatches);
+	}
+
+	public void testTTests() throws Exception {
+		checkAlgorithm(OptionsManager.T_TESTS);
+	}
+
+	public void testManhattan() throws Exception {
+		checkAlgorithm(OptionsManager.MANHATTAN);
+	}
+
+	public void testEuclidean() throws Exception {
+		checkAlgorithm(OptionsManager.EUCLIDEAN);
+	}
+
+	public void testMahalanobis() throws Exception {
+		checkAlgorithm(OptionsManager.MAHALANOBIS);
+	}
+}
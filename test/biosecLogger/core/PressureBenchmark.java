@@ -0,0 +1,129 @@
+package biosecLogger.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Compares cost of handing touch pressure from service to logger. Old path
+ * put pressure to intent, sent broadcast and received it in registered
+ * receiver. Actual path writes pressure to volatile field of ServiceHandler
+ * and logger reads it. Broadcasts need Android, so benchmark runs only on
+ * device or emulator as instrumentation test. Results are written to log.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class PressureBenchmark extends AndroidTestCase {
+
+	/** Action of broadcast used by old path */
+	private static final String SCREEN_TOUCHED = "Key Pressed";
+
+	private static final int WARMUP = 200;
+	private static final int TOUCHES = 2000;
+
+	/** Maximal time to deliver all broadcasts */
+	private static final long TIMEOUT = 60;
+
+	/** Keeps read values, so reading is not optimized out */
+	private float sink;
+
+	/**
+	 * Receives pressure as old ServiceHandler did and counts received
+	 * broadcasts.
+	 */
+	private static class PressureReceiver extends BroadcastReceiver {
+		private volatile float pressure;
+		private volatile CountDownLatch received;
+
+		@Override
+		public void onReceive(Context ctx, Intent intent) {
+			pressure = intent.getFloatExtra("pressure", 0);
+			received.countDown();
+		}
+	}
+
+	/**
+	 * Publishes and reads pressure through ServiceHandler.
+	 *
+	 * @param touches
+	 *            number of touches
+	 * @return elapsed time in nanos
+	 */
+	private long publishPressure(int touches) {
+		ServiceHandler handler = ServiceHandler.INSTANCE;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < touches; i++) {
+			handler.publishPressure(i);
+			sink += handler.getPressure();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Sends pressure in broadcasts and waits until all are received.
+	 *
+	 * @param receiver
+	 *            registered receiver
+	 * @param touches
+	 *            number of touches
+	 * @return elapsed time in nanos
+	 * @throws InterruptedException
+	 *             raises when waiting is interrupted
+	 */
+	private long broadcastPressure(PressureReceiver receiver, int touches)
+			throws InterruptedException {
+		Intent sender = new Intent();
+		sender.setAction(SCREEN_TOUCHED);
+		receiver.received = new CountDownLatch(touches);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < touches; i++) {
+			sender.putExtra("pressure", (float) i);
+			getContext().sendBroadcast(sender);
+		}
+		assertTrue("Broadcasts were not delivered",
+				receiver.received.await(TIMEOUT, TimeUnit.SECONDS));
+		long elapsed = System.nanoTime() - start;
+
+		sink += receiver.pressure;
+		return elapsed;
+	}
+
+	public void testPublishIsFasterThanBroadcast() throws Exception {
+		HandlerThread thread = new HandlerThread("PressureBenchmark");
+		thread.start();
+
+		PressureReceiver receiver = new PressureReceiver();
+		IntentFilter filter = new IntentFilter();
+		filter.addAction(SCREEN_TOUCHED);
+		getContext().registerReceiver(receiver, filter, null,
+				new Handler(thread.getLooper()));
+
+		try {
+			publishPressure(WARMUP);
+			broadcastPressure(receiver, WARMUP);
+
+			double publish = (double) publishPressure(TOUCHES) / TOUCHES;
+			double broadcast = (double) broadcastPressure(receiver, TOUCHES)
+					/ TOUCHES;
+
+			Log.i(UserLoggerManager.LOGNAME, "Pressure per touch: publish "
+					+ publish + " ns, broadcast " + broadcast + " ns (sink "
+					+ sink + ")");
+			assertTrue(publish < broadcast);
+		} finally {
+			getContext().unregisterReceiver(receiver);
+			thread.quit();
+		}
+	}
+}
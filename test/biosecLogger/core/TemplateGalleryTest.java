@@ -0,0 +1,183 @@
+package biosecLogger.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests identification of sample against gallery of compiled templates.
+ * Scores of gallery must be the same as scores of evaluation against every
+ * single template.
+ *
+ * @author Stefan Smihla
+ *
+ */
+public class TemplateGalleryTest extends TestCase {
+
+	private static final int USERS = 5;
+	private static final int SAMPLES = 15;
+	private static final int KEYS = 10;
+	private static final int TESTS = 20;
+
+	private Random random;
+
+	@Override
+	protected void setUp() {
+		random = new Random(7);
+	}
+
+	/**
+	 * Creates sample of user with typing speed given by base.
+	 *
+	 * @param base
+	 *            base flying time of user
+	 * @param keys
+	 *            number of keys
+	 * @return biometric sample
+	 */
+	private KeystrokeSample createSample(double base, int keys) {
+		KeystrokeSample sample = new KeystrokeSample();
+
+		for (int i = 0; i < keys; i++) {
+			double flyingTime = (i == 0) ? 0 : base + i * 10
+					+ random.nextGaussian() * 15;
+			sample.addKey(flyingTime, random.nextInt(30) == 0,
+					random.nextInt(20) == 0, 0, 0, random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian(),
+					random.nextGaussian() + base / 100, random.nextGaussian(),
+					random.nextGaussian());
+		}
+
+		sample.trim();
+		return sample;
+	}
+
+	/**
+	 * Identifies test samples of all users and compares gallery scores with
+	 * evaluation of every template.
+	 *
+	 * @param algorithm
+	 *            evaluation algorithm constant
+	 */
+	private void checkAlgorithm(int algorithm) {
+		OptionsManager om = new OptionsManager();
+		om.setFlag(OptionsManager.FLYINGTIMES | OptionsManager.ACCELERANCE
+				| OptionsManager.ORIENTATION | OptionsManager.ERRORRATE
+				| OptionsManager.LONGPRESSRATE);
+		om.setGraphs(3);
+		om.setEvaluationAlgorithm(algorithm);
+
+		List<CompiledTemplate> templates = new ArrayList<CompiledTemplate>();
+		for (int u = 0; u < USERS; u++) {
+			/* Last user has longer password */
+			int keys = (u == USERS - 1) ? KEYS + 2 : KEYS;
+			UserModel user = new UserModel("user" + u, "password", 50);
+			for (int s = 0; s < SAMPLES; s++) {
+				user.addRow(createSample(100 + u * 60, keys));
+			}
+			templates.add(new CompiledTemplate(user, om));
+		}
+
+		TemplateGallery gallery = new TemplateGallery(templates, om);
+		LoginEvaluator evaluator = new LoginEvaluator(om);
+		assertEquals(USERS, gallery.size());
+
+		int identified = 0;
+		for (int i = 0; i < TESTS; i++) {
+			int owner = i % (USERS - 1);
+			KeystrokeSample row = createSample(100 + owner * 60, KEYS);
+
+			double[] scores = evaluator.evaluate(gallery, row);
+			List<IdentificationResult> results = evaluator.identify(gallery,
+					row);
+			assertEquals(USERS - 1, results.size());
+
+			for (int t = 0; t < USERS; t++) {
+				double expected = evaluator.evaluate(templates.get(t), row,
+						false).getScore();
+				assertEquals(expected, scores[t], 1e-9);
+			}
+
+			for (int r = 1; r < results.size(); r++) {
+				assertTrue(results.get(r - 1).getScore() >= results.get(r)
+						.getScore());
+			}
+
+			for (IdentificationResult result : results) {
+				int t = Integer.parseInt(result.getUsername().substring(4));
+				assertEquals(scores[t], result.getScore(), 0);
+			}
+
+			if (results.get(0).getUsername().equals("user" + owner)) {
+				identified++;
+			}
+		}
+
+		/* Users type with clearly different speed */
+		assertTrue("Identified " + identified, identified > TESTS / 2);
+	}
+
+	/**
+	 * Evaluates parts of all channels once and checks that scores combined for
+	 * every flag are the same as evaluation with templates of that flag.
+	 */
+	public void testCombinedParts() {
+		int all = OptionsManager.FLYINGTIMES | OptionsManager.ACCELERANCE
+				| OptionsManager.ORIENTATION | OptionsManager.ERRORRATE
+				| OptionsManager.LONGPRESSRATE;
+		OptionsManager om = new OptionsManager();
+		om.setFlag(all);
+		om.setGraphs(2);
+		om.setEvaluationAlgorithm(OptionsManager.MANHATTAN);
+
+		List<UserModel> users = new ArrayList<UserModel>();
+		List<CompiledTemplate> templates = new ArrayList<CompiledTemplate>();
+		for (int u = 0; u < USERS; u++) {
+			UserModel user = new UserModel("user" + u, "password", 50);
+			for (int s = 0; s < SAMPLES; s++) {
+				user.addRow(createSample(100 + u * 60, KEYS));
+			}
+			users.add(user);
+			templates.add(new CompiledTemplate(user, om));
+		}
+
+		LoginEvaluator evaluator = new LoginEvaluator(om);
+		KeystrokeSample row = createSample(160, KEYS);
+		double[][] parts = evaluator.evaluateParts(new TemplateGallery(
+				templates, om), row);
+
+		for (int flag = 1; flag <= all; flag++) {
+			if ((flag & ~all) != 0) {
+				continue;
+			}
+
+			OptionsManager flagOptions = new OptionsManager(om, flag);
+			LoginEvaluator flagEvaluator = new LoginEvaluator(flagOptions);
+			for (int t = 0; t < USERS; t++) {
+				double expected = flagEvaluator.evaluate(
+						new CompiledTemplate(users.get(t), flagOptions), row,
+						false).getScore();
+				assertEquals(expected, evaluator.combineParts(parts[t], flag),
+						1e-9);
+			}
+		}
+	}
+
+	public void testTTests() {
+		checkAlgorithm(OptionsManager.T_TESTS);
+	}
+
+	public void testManhattan() {
+		checkAlgorithm(OptionsManager.MANHATTAN);
+	}
+
+	public void testEuclidean() {
+		checkAlgorithm(OptionsManager.EUCLIDEAN);
+	}
+
+	public void testMahalanobis() {
+		checkAlgorithm(OptionsManager.MAHALANOBIS);
+	}
+}